@@ -0,0 +1,56 @@
+package com.n26.mihai.coding.challenge.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmark suite with the GC profiler, writing JMH's JSON results to {@code target/jmh} so they can be
+ * compared between versions:
+ * <ul>
+ * <li>{@link IngestThroughputBenchmark} with 1, 2, 4, ... producer threads up to the number of cores, one
+ * {@code ingest-<threads>-threads.json} each, followed by a summary of how throughput scales</li>
+ * <li>{@link QueryUnderWriteBenchmark} and {@link ExpiryBenchmark}, one JSON file each</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+    private static final File RESULTS_DIRECTORY = new File("target/jmh");
+
+    public static void main(String[] args) throws RunnerException {
+        RESULTS_DIRECTORY.mkdirs();
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        List<String> lines = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2, maxThreads) : threads + 1) {
+            ChainedOptionsBuilder options = options(IngestThroughputBenchmark.class, "ingest-" + threads + "-threads")
+                    .threads(threads);
+            for (RunResult result : new Runner(options.build()).run()) {
+                if (result.getParams().getMode() == Mode.Throughput) {
+                    lines.add(String.format("%-8s %-12s %-10s %3d threads %,15.0f ops/s", result.getParams().getParam("ingestMode"),
+                            result.getParams().getParam("numericMode"), result.getParams().getParam("amounts"), threads,
+                            result.getPrimaryResult().getScore() * 1000000));
+                }
+            }
+        }
+        new Runner(options(QueryUnderWriteBenchmark.class, "query-under-write").build()).run();
+        new Runner(options(ExpiryBenchmark.class, "expiry").build()).run();
+        lines.forEach(System.out::println);
+    }
+
+    private static ChainedOptionsBuilder options(Class<?> benchmark, String resultName) {
+        return new OptionsBuilder()
+                .include(benchmark.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(RESULTS_DIRECTORY, resultName + ".json").getPath());
+    }
+}
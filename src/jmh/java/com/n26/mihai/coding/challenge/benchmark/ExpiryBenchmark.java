@@ -0,0 +1,71 @@
+package com.n26.mihai.coding.challenge.benchmark;
+
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import com.n26.mihai.coding.challenge.aggregation.WindowAggregator;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying one transaction and expiring the window at steady state, on the applier's own data structures.
+ * Time is simulated: every invocation moves the clock by {@code stepMillis}, adds a transaction at the new time and
+ * aggregates the window, so buckets keep entering and leaving it at a fixed rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpiryBenchmark {
+
+    private static final long WINDOW_MILLIS = 60000;
+
+    @Param({"1", "10", "100"})
+    private long stepMillis;
+
+    @Param({"decimal", "fixed-point"})
+    private String numericMode;
+
+    @Param({"duplicate", "distinct"})
+    private String amounts;
+
+    private WindowAggregator windowAggregator;
+
+    private final StatisticsBucket window = new StatisticsBucket(0);
+
+    private long currentMillis;
+
+    private long amount;
+
+    @Setup(Level.Trial)
+    public void createAggregator() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(WINDOW_MILLIS);
+        windowAggregator = new WindowAggregator(applicationProperties);
+        for (currentMillis = 0; currentMillis < WINDOW_MILLIS; currentMillis += stepMillis) {
+            add();
+        }
+    }
+
+    @Benchmark
+    public StatisticsBucket applyAndExpire() {
+        currentMillis += stepMillis;
+        add();
+        window.reset(0);
+        windowAggregator.aggregateWindow(currentMillis - WINDOW_MILLIS, window, null);
+        return window;
+    }
+
+    private void add() {
+        amount = "duplicate".equals(amounts) ? 1999 : amount + 7919;
+        if ("fixed-point".equals(numericMode)) {
+            windowAggregator.add(currentMillis, amount, null);
+        }
+        else {
+            windowAggregator.add(currentMillis, 0, BigDecimal.valueOf(amount, 2));
+        }
+    }
+}
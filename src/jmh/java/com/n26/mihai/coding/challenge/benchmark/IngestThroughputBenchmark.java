@@ -0,0 +1,66 @@
+package com.n26.mihai.coding.challenge.benchmark;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.impl.StatisticsServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency distribution of {@code createTransaction}, for every ingest mode, numeric mode and amount
+ * workload. The number of producer threads is chosen by the runner.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestThroughputBenchmark {
+
+    @Param({"queued", "striped"})
+    private String ingestMode;
+
+    @Param({"decimal", "fixed-point"})
+    private String numericMode;
+
+    @Param({"duplicate", "distinct"})
+    private String amounts;
+
+    private StatisticsServiceImpl statisticsService;
+
+    @Setup(Level.Trial)
+    public void startService() throws IOException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(60000l);
+        applicationProperties.setIngestMode(ingestMode);
+        // measure the engine at saturation rather than how fast it sheds
+        applicationProperties.setAdmissionMode("none");
+        applicationProperties.setNumericMode(numericMode);
+        statisticsService = new StatisticsServiceImpl(applicationProperties);
+        statisticsService.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopService() throws InterruptedException {
+        statisticsService.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private Transactions transactions;
+
+        @Setup(Level.Iteration)
+        public void createTransactions(IngestThroughputBenchmark benchmark) {
+            transactions = new Transactions(benchmark.amounts);
+        }
+    }
+
+    @Benchmark
+    public TransactionStatus createTransaction(Producer producer) {
+        return statisticsService.createTransaction(producer.transactions.next());
+    }
+}
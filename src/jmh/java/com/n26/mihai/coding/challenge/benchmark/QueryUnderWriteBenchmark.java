@@ -0,0 +1,104 @@
+package com.n26.mihai.coding.challenge.benchmark;
+
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.impl.StatisticsServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the read paths while writer threads keep ingesting: the published snapshot, percentile estimates from it
+ * and an arbitrary window answered on the applier thread.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class QueryUnderWriteBenchmark {
+
+    private static final List<String> PERCENTILES = Arrays.asList("50", "99");
+
+    @Param({"queued", "striped"})
+    private String ingestMode;
+
+    @Param({"duplicate", "distinct"})
+    private String amounts;
+
+    private StatisticsServiceImpl statisticsService;
+
+    @Setup(Level.Trial)
+    public void startService() throws IOException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(60000l);
+        applicationProperties.setIngestMode(ingestMode);
+        // measure the engine at saturation rather than how fast it sheds
+        applicationProperties.setAdmissionMode("none");
+        statisticsService = new StatisticsServiceImpl(applicationProperties);
+        statisticsService.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopService() throws InterruptedException {
+        statisticsService.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private Transactions transactions;
+
+        @Setup(Level.Iteration)
+        public void createTransactions(QueryUnderWriteBenchmark benchmark) {
+            transactions = new Transactions(benchmark.amounts);
+        }
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(3)
+    public TransactionStatus snapshotWriter(Producer producer) {
+        return statisticsService.createTransaction(producer.transactions.next());
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public StatisticsDTO getStatistics() {
+        return statisticsService.getStatistics();
+    }
+
+    @Benchmark
+    @Group("percentiles")
+    @GroupThreads(3)
+    public TransactionStatus percentilesWriter(Producer producer) {
+        return statisticsService.createTransaction(producer.transactions.next());
+    }
+
+    @Benchmark
+    @Group("percentiles")
+    @GroupThreads(1)
+    public StatisticsDTO getPercentiles() {
+        return statisticsService.getStatistics(60000l, PERCENTILES);
+    }
+
+    @Benchmark
+    @Group("window")
+    @GroupThreads(3)
+    public TransactionStatus windowWriter(Producer producer) {
+        return statisticsService.createTransaction(producer.transactions.next());
+    }
+
+    @Benchmark
+    @Group("window")
+    @GroupThreads(1)
+    public StatisticsDTO getWindow() {
+        return statisticsService.getStatistics(10000l, null);
+    }
+}
@@ -0,0 +1,36 @@
+package com.n26.mihai.coding.challenge.benchmark;
+
+import com.n26.mihai.coding.challenge.dto.TransactionDTO;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cycles through pre-built transactions timestamped now, so benchmarks measure the service and not the set-up. With
+ * {@code duplicate} amounts every transaction has the same amount, with {@code distinct} amounts they all differ.
+ */
+class Transactions {
+
+    private static final int SIZE = 4096;
+
+    private final TransactionDTO[] transactions = new TransactionDTO[SIZE];
+
+    private int next;
+
+    Transactions(String amounts) {
+        Date timestamp = new Date();
+        long base = ThreadLocalRandom.current().nextLong(1000000000l);
+        for (int i = 0; i < SIZE; i++) {
+            transactions[i] = new TransactionDTO();
+            transactions[i].setAmount("duplicate".equals(amounts) ? BigDecimal.valueOf(1999, 2) : BigDecimal.valueOf(base + i, 2));
+            transactions[i].setTimestamp(timestamp);
+        }
+    }
+
+    TransactionDTO next() {
+        TransactionDTO transaction = transactions[next];
+        next = (next + 1) & (SIZE - 1);
+        return transaction;
+    }
+}
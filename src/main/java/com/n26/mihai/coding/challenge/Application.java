@@ -1,7 +1,13 @@
 package com.n26.mihai.coding.challenge;
 
+import com.n26.mihai.coding.challenge.ingestion.AdmissionController;
+import com.n26.mihai.coding.challenge.metrics.StatisticsMetrics;
+import com.n26.mihai.coding.challenge.service.impl.StatisticsServiceImpl;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Clock;
 
 @SpringBootApplication
 public class Application {
@@ -9,4 +15,19 @@ public class Application {
 	public static void main(String[] args) {
 		SpringApplication.run(Application.class, args);
 	}
+
+	@Bean
+	public Clock clock() {
+		return Clock.systemUTC();
+	}
+
+	@Bean
+	public StatisticsMetrics statisticsMetrics(StatisticsServiceImpl statisticsService) {
+		return statisticsService.getMetrics();
+	}
+
+	@Bean
+	public AdmissionController admissionController(StatisticsServiceImpl statisticsService) {
+		return statisticsService.getAdmissionController();
+	}
 }
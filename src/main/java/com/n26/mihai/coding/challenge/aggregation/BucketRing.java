@@ -0,0 +1,233 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed ring of {@link StatisticsBucket}s, each covering {@code bucketMillis} milliseconds. A slot is reused as soon
+ * as a newer bucket maps onto it, so memory depends only on the window length and the granularity. Not thread safe.
+ * <p>
+ * Count and sum of all live buckets are kept as running totals and their min and max in a
+ * {@link SlidingWindowExtrema}, so once {@link #expire} has dropped the buckets that left the window,
+ * {@link #aggregateWindow} is O(1).
+ * <p>
+ * Rings can be chained into a cascade of ever coarser levels: a bucket that expires from one ring is merged into the
+ * {@code next} ring instead of being dropped.
+ */
+public class BucketRing {
+
+    private final long bucketMillis;
+
+    private StatisticsBucket[] buckets;
+
+    private SlidingWindowExtrema extrema;
+
+    private final StatisticsBucket windowTotals = new StatisticsBucket(0);
+
+    private long oldestIndex = Long.MIN_VALUE;
+
+    private final BucketRing next;
+
+    private long liveCursor = Long.MAX_VALUE;
+
+    private long newestIndex = Long.MIN_VALUE;
+
+    public BucketRing(long bucketMillis, long windowMillis) {
+        this(bucketMillis, windowMillis, null);
+    }
+
+    public BucketRing(long bucketMillis, long windowMillis, BucketRing next) {
+        this.bucketMillis = bucketMillis;
+        this.next = next;
+        this.buckets = new StatisticsBucket[capacityFor(windowMillis)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new StatisticsBucket(Long.MIN_VALUE);
+        }
+        this.extrema = new SlidingWindowExtrema(buckets.length);
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public long indexOf(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, bucketMillis);
+    }
+
+    /**
+     * Grows the ring when the window gets longer than the ring can hold, keeping the buckets already recorded.
+     */
+    public void ensureCapacity(long windowMillis) {
+        int capacity = capacityFor(windowMillis);
+        if (capacity <= buckets.length) {
+            return;
+        }
+        StatisticsBucket[] resized = new StatisticsBucket[capacity];
+        for (StatisticsBucket bucket : buckets) {
+            if (bucket.getIndex() != Long.MIN_VALUE) {
+                resized[slotOf(bucket.getIndex(), capacity)] = bucket;
+            }
+        }
+        SlidingWindowExtrema resizedExtrema = new SlidingWindowExtrema(capacity);
+        for (int i = 0; i < capacity; i++) {
+            if (resized[i] == null) {
+                resized[i] = new StatisticsBucket(Long.MIN_VALUE);
+            }
+            resizedExtrema.update(i, resized[i]);
+        }
+        this.buckets = resized;
+        this.extrema = resizedExtrema;
+    }
+
+    /**
+     * Adds a fixed-point amount, or {@code decimalAmount} when it is not null.
+     *
+     * @return false when the timestamp is older than anything the ring still holds
+     */
+    public boolean add(long timestampMillis, long amount, BigDecimal decimalAmount) {
+        long index = indexOf(timestampMillis);
+        int slot = slotOf(index, buckets.length);
+        StatisticsBucket bucket = buckets[slot];
+        if (index < oldestIndex || bucket.getIndex() > index) {
+            return false;
+        }
+        if (bucket.getIndex() < index) {
+            evict(slot);
+            bucket.reset(index);
+        }
+        bucket.add(amount, decimalAmount);
+        windowTotals.add(amount, decimalAmount);
+        extrema.update(slot, bucket);
+        track(index);
+        return true;
+    }
+
+    /**
+     * Merges a whole bucket of a finer ring that started at {@code startMillis}.
+     */
+    public void merge(long startMillis, StatisticsBucket finerBucket) {
+        long index = indexOf(startMillis);
+        int slot = slotOf(index, buckets.length);
+        StatisticsBucket bucket = buckets[slot];
+        if (index < oldestIndex || bucket.getIndex() > index) {
+            return;
+        }
+        if (bucket.getIndex() < index) {
+            evict(slot);
+            bucket.reset(index);
+        }
+        bucket.merge(finerBucket);
+        windowTotals.merge(finerBucket);
+        extrema.update(slot, bucket);
+        track(index);
+    }
+
+    /**
+     * Drops every bucket that only holds transactions not newer than {@code fromMillis}.
+     */
+    public void expire(long fromMillis) {
+        long expiredBefore = indexOf(fromMillis + 1);
+        if (expiredBefore <= oldestIndex) {
+            return;
+        }
+        if (oldestIndex == Long.MIN_VALUE || expiredBefore - oldestIndex >= buckets.length) {
+            for (int slot = 0; slot < buckets.length; slot++) {
+                if (buckets[slot].getIndex() < expiredBefore) {
+                    evict(slot);
+                }
+            }
+        }
+        else {
+            for (long index = oldestIndex; index < expiredBefore; index++) {
+                int slot = slotOf(index, buckets.length);
+                if (buckets[slot].getIndex() == index) {
+                    evict(slot);
+                }
+            }
+        }
+        oldestIndex = expiredBefore;
+    }
+
+    /**
+     * Merges every bucket not dropped by {@link #expire} into {@code result}.
+     */
+    public void aggregateWindow(StatisticsBucket result) {
+        windowTotals.setExtrema(extrema.fixedMin(), extrema.fixedMax(), extrema.decimalMin(), extrema.decimalMax());
+        result.merge(windowTotals);
+    }
+
+    /**
+     * Running count and sum of the buckets not dropped by {@link #expire}, without their min and max. Read only.
+     */
+    StatisticsBucket windowTotals() {
+        return windowTotals;
+    }
+
+    /**
+     * Merges into {@code result} every bucket that still holds transactions newer than {@code fromMillis} (exclusive)
+     * and not newer than {@code toMillis}.
+     */
+    public void aggregate(long fromMillis, long toMillis, StatisticsBucket result) {
+        long oldest = indexOf(fromMillis + 1);
+        long newest = indexOf(toMillis);
+        for (StatisticsBucket bucket : buckets) {
+            if (bucket.getIndex() >= oldest && bucket.getIndex() <= newest) {
+                result.merge(bucket);
+            }
+        }
+    }
+
+    /**
+     * Start of the oldest bucket that holds transactions, or {@link Long#MIN_VALUE} when the ring is empty. A cursor
+     * only moves forward over empty buckets between calls, so this is amortized O(1) per bucket of elapsed time.
+     */
+    public long oldestMillis() {
+        long cursor = Math.max(liveCursor, oldestIndex);
+        while (cursor <= newestIndex) {
+            StatisticsBucket bucket = buckets[slotOf(cursor, buckets.length)];
+            if (bucket.getIndex() == cursor && bucket.getCount() > 0) {
+                break;
+            }
+            cursor++;
+        }
+        liveCursor = cursor;
+        return cursor <= newestIndex ? cursor * bucketMillis : Long.MIN_VALUE;
+    }
+
+    /**
+     * Merges into {@code result} every bucket that still holds transactions newer than {@code fromMillis}, without
+     * expiring anything.
+     */
+    public void collect(long fromMillis, PartialAggregates result) {
+        long oldest = indexOf(fromMillis + 1);
+        for (StatisticsBucket bucket : buckets) {
+            if (bucket.getIndex() >= oldest && bucket.getCount() > 0) {
+                result.merge(bucket);
+            }
+        }
+    }
+
+    private void track(long index) {
+        liveCursor = Math.min(liveCursor, index);
+        newestIndex = Math.max(newestIndex, index);
+    }
+
+    private void evict(int slot) {
+        StatisticsBucket bucket = buckets[slot];
+        if (bucket.getCount() > 0) {
+            windowTotals.subtract(bucket);
+            if (next != null) {
+                next.merge(bucket.getIndex() * bucketMillis, bucket);
+            }
+        }
+        bucket.reset(Long.MIN_VALUE);
+        extrema.update(slot, bucket);
+    }
+
+    private int capacityFor(long windowMillis) {
+        return (int) (windowMillis / bucketMillis) + 3;
+    }
+
+    private static int slotOf(long index, int capacity) {
+        return (int) Math.floorMod(index, (long) capacity);
+    }
+}
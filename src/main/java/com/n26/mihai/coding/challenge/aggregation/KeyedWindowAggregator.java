@@ -0,0 +1,238 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count, sum, min and max per transaction key, each kept in its own small {@link BucketRing} of
+ * {@code key-bucket-millis} buckets and guarded by its own monitor, so producers of different keys never contend.
+ * <p>
+ * Keys are ranked by window sum in a skip list. A key's rank is replaced whenever its sum changes, on add and whenever
+ * its buckets expire, from the ring's running totals, so ranking a fixed-point sum allocates no {@link BigDecimal}.
+ * Between expiries a rank may still include buckets that have left the window, so {@link #top} expires the keys it
+ * reads and stops once the next rank is below every one it keeps. At most {@code max-keys} keys are tracked;
+ * transactions of further keys only count towards the global statistics. Keys whose window is empty are dropped by
+ * {@link #evictIdle}. Thread safe.
+ */
+public class KeyedWindowAggregator {
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ConcurrentHashMap<String, KeyedWindow> windows = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListSet<KeyRank> ranking = new ConcurrentSkipListSet<>();
+
+    private final AtomicInteger keyCount = new AtomicInteger();
+
+    public KeyedWindowAggregator(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    public int size() {
+        return keyCount.get();
+    }
+
+    /**
+     * Adds a fixed-point amount, or {@code decimalAmount} when it is not null, to the window of {@code key}.
+     *
+     * @return false when the key is not tracked because {@code max-keys} keys already are, or when the timestamp is
+     * older than anything the key's window still holds
+     */
+    public boolean add(String key, long timestampMillis, long amount, BigDecimal decimalAmount) {
+        while (true) {
+            KeyedWindow window = windows.get(key);
+            if (window == null) {
+                if (keyCount.incrementAndGet() > applicationProperties.getMaxKeys()) {
+                    keyCount.decrementAndGet();
+                    return false;
+                }
+                KeyedWindow created = new KeyedWindow(key);
+                window = windows.putIfAbsent(key, created);
+                if (window == null) {
+                    window = created;
+                }
+                else {
+                    keyCount.decrementAndGet();
+                }
+            }
+            synchronized (window) {
+                if (window.evicted) {
+                    continue;
+                }
+                window.ring.ensureCapacity(applicationProperties.getTransactionLifeMillis());
+                if (!window.ring.add(timestampMillis, amount, decimalAmount)) {
+                    return false;
+                }
+                rank(window);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Merges into {@code result} the window of {@code key}, leaving it untouched when the key is not tracked.
+     */
+    public void aggregateWindow(String key, long fromMillis, StatisticsBucket result) {
+        KeyedWindow window = windows.get(key);
+        if (window == null) {
+            return;
+        }
+        synchronized (window) {
+            expire(window, fromMillis);
+            window.ring.aggregateWindow(result);
+        }
+    }
+
+    /**
+     * Reads the ranking from the top, expiring every key it reads, until {@code limit} keys rank above the next one.
+     *
+     * @return the windows of the {@code limit} keys with the highest sum, highest first
+     */
+    public Map<String, StatisticsBucket> top(int limit, long fromMillis) {
+        Map<String, StatisticsBucket> top = new LinkedHashMap<>();
+        if (limit < 1) {
+            return top;
+        }
+        PriorityQueue<KeyRank> lowestFirst = new PriorityQueue<>(Collections.reverseOrder());
+        Set<String> read = new HashSet<>();
+        for (KeyRank rank : ranking) {
+            if (lowestFirst.size() == limit && rank.compareTo(lowestFirst.peek()) > 0) {
+                break;
+            }
+            KeyedWindow window = windows.get(rank.key);
+            if (window == null || !read.add(rank.key)) {
+                continue;
+            }
+            KeyRank fresh;
+            synchronized (window) {
+                expire(window, fromMillis);
+                fresh = window.rank;
+            }
+            if (fresh != null) {
+                lowestFirst.add(fresh);
+                if (lowestFirst.size() > limit) {
+                    lowestFirst.poll();
+                }
+            }
+        }
+        List<KeyRank> ranks = new ArrayList<>(lowestFirst);
+        Collections.sort(ranks);
+        for (KeyRank rank : ranks) {
+            StatisticsBucket result = new StatisticsBucket(0);
+            aggregateWindow(rank.key, fromMillis, result);
+            if (result.getCount() > 0) {
+                top.put(rank.key, result);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Expires every key and drops the ones left without transactions newer than {@code fromMillis}.
+     */
+    public void evictIdle(long fromMillis) {
+        for (KeyedWindow window : windows.values()) {
+            synchronized (window) {
+                expire(window, fromMillis);
+                if (window.rank == null && !window.evicted) {
+                    window.evicted = true;
+                    windows.remove(window.key, window);
+                    keyCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void expire(KeyedWindow window, long fromMillis) {
+        window.ring.expire(fromMillis);
+        rank(window);
+    }
+
+    /**
+     * Replaces the rank of {@code window} when its sum changed, and drops it when the window is empty.
+     */
+    private void rank(KeyedWindow window) {
+        StatisticsBucket totals = window.ring.windowTotals();
+        KeyRank rank = window.rank;
+        if (rank != null && totals.getCount() > 0 && rank.isSumOf(totals)) {
+            return;
+        }
+        if (rank != null) {
+            ranking.remove(rank);
+        }
+        window.rank = totals.getCount() == 0 ? null : new KeyRank(window.key, totals, applicationProperties.getDecimalScale());
+        if (window.rank != null) {
+            ranking.add(window.rank);
+        }
+    }
+
+    private class KeyedWindow {
+
+        private final String key;
+
+        private final BucketRing ring;
+
+        private KeyRank rank;
+
+        private boolean evicted;
+
+        private KeyedWindow(String key) {
+            this.key = key;
+            this.ring = new BucketRing(applicationProperties.getKeyBucketMillis(), applicationProperties.getTransactionLifeMillis());
+        }
+    }
+
+    /**
+     * Position of a key in the ranking: highest sum first, ties broken by key. The sum is kept as a fixed-point long
+     * while it is one, and as a decimal once it overflows or includes decimal amounts.
+     */
+    private static class KeyRank implements Comparable<KeyRank> {
+
+        private final String key;
+
+        private final long fixedSum;
+
+        private final BigDecimal sum;
+
+        private final int scale;
+
+        private KeyRank(String key, StatisticsBucket totals, int scale) {
+            this.key = key;
+            this.fixedSum = totals.getFixedSum();
+            this.sum = isFixedPoint(totals) ? null : totals.sum(scale);
+            this.scale = scale;
+        }
+
+        private boolean isSumOf(StatisticsBucket totals) {
+            return sum == null && isFixedPoint(totals) && totals.getFixedSum() == fixedSum;
+        }
+
+        private BigDecimal sum() {
+            return sum != null ? sum : BigDecimal.valueOf(fixedSum, scale);
+        }
+
+        private static boolean isFixedPoint(StatisticsBucket totals) {
+            return totals.getFixedSumOverflow() == null && totals.getDecimalSum() == null;
+        }
+
+        @Override
+        public int compareTo(KeyRank other) {
+            int bySum = sum == null && other.sum == null && scale == other.scale
+                    ? Long.compare(other.fixedSum, fixedSum)
+                    : other.sum().compareTo(sum());
+            return bySum != 0 ? bySum : key.compareTo(other.key);
+        }
+    }
+}
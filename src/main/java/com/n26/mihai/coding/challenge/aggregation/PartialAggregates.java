@@ -0,0 +1,53 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+
+/**
+ * Per-bucket count, sum, min and max of one or more nodes, keyed by bucket index so that buckets of different nodes
+ * with the same start line up and merge. Not thread safe.
+ */
+public class PartialAggregates {
+
+    private final long bucketMillis;
+
+    private final TreeMap<Long, StatisticsBucket> buckets = new TreeMap<>();
+
+    public PartialAggregates(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public Collection<StatisticsBucket> getBuckets() {
+        return Collections.unmodifiableCollection(buckets.values());
+    }
+
+    /**
+     * Merges a bucket whose index is based on the same {@code bucketMillis}.
+     */
+    public void merge(StatisticsBucket bucket) {
+        buckets.computeIfAbsent(bucket.getIndex(), StatisticsBucket::new).merge(bucket);
+    }
+
+    public void merge(PartialAggregates other) {
+        if (other.bucketMillis != bucketMillis) {
+            throw new IllegalArgumentException("Cannot merge buckets of " + other.bucketMillis + "ms into buckets of " + bucketMillis + "ms");
+        }
+        for (StatisticsBucket bucket : other.buckets.values()) {
+            merge(bucket);
+        }
+    }
+
+    /**
+     * Merges into {@code result} every bucket that holds transactions newer than {@code fromMillis}.
+     */
+    public void aggregate(long fromMillis, StatisticsBucket result) {
+        for (StatisticsBucket bucket : buckets.tailMap(Math.floorDiv(fromMillis + 1, bucketMillis)).values()) {
+            result.merge(bucket);
+        }
+    }
+}
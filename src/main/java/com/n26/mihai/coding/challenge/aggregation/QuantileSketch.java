@@ -0,0 +1,155 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Log-bucketed histogram with a configurable relative error, in the spirit of HDR histograms and DDSketch. A value x
+ * is counted in bin ceil(log(|x|) / log(gamma)) with gamma = (1 + error) / (1 - error), so every estimate is within
+ * {@code relativeError} of a value that was actually added. Sketches with the same relative error can be merged and,
+ * since they only hold counts, subtracted again.
+ */
+public class QuantileSketch {
+
+    private final double relativeError;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private final Bins positive = new Bins();
+
+    private final Bins negative = new Bins();
+
+    private long zeroCount;
+
+    private long count;
+
+    public QuantileSketch(double relativeError) {
+        this.relativeError = relativeError;
+        this.gamma = (1 + relativeError) / (1 - relativeError);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void add(double value) {
+        if (value > 0) {
+            positive.add(binOf(value), 1);
+        }
+        else if (value < 0) {
+            negative.add(binOf(-value), 1);
+        }
+        else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        checkCompatible(other);
+        positive.merge(other.positive, 1);
+        negative.merge(other.negative, 1);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public void subtract(QuantileSketch other) {
+        checkCompatible(other);
+        positive.merge(other.positive, -1);
+        negative.merge(other.negative, -1);
+        zeroCount -= other.zeroCount;
+        count -= other.count;
+    }
+
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the estimated value at that quantile, or NaN when the sketch is empty
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -valueOf(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return valueOf(positive.offset + i);
+            }
+        }
+        return valueOf(positive.offset + positive.counts.length - 1);
+    }
+
+    private int binOf(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private double valueOf(int bin) {
+        return 2 * Math.pow(gamma, bin) / (gamma + 1);
+    }
+
+    private void checkCompatible(QuantileSketch other) {
+        if (other.relativeError != relativeError) {
+            throw new IllegalArgumentException("Cannot combine sketches with relative errors " + relativeError + " and " + other.relativeError);
+        }
+    }
+
+    /**
+     * Dense counts for a contiguous range of bins starting at {@code offset}, grown on demand.
+     */
+    private static class Bins {
+
+        private long[] counts = new long[0];
+
+        private int offset;
+
+        private void add(int bin, long delta) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = bin - 4;
+            }
+            else if (bin < offset || bin >= offset + counts.length) {
+                int low = Math.min(bin, offset);
+                int high = Math.max(bin, offset + counts.length - 1);
+                int length = Math.max(high - low + 1, counts.length + counts.length / 2);
+                int newOffset = bin < offset ? high - length + 1 : low;
+                long[] grown = new long[length];
+                System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+                counts = grown;
+                offset = newOffset;
+            }
+            counts[bin - offset] += delta;
+        }
+
+        private void merge(Bins other, long sign) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, sign * other.counts[i]);
+                }
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(counts, 0);
+        }
+    }
+}
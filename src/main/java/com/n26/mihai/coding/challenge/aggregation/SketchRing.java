@@ -0,0 +1,129 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Ring of {@link QuantileSketch}es, one per {@code bucketMillis} of transaction time, plus a running sketch of the
+ * whole window. A bucket's sketch is subtracted from the window sketch when the bucket expires, so the window sketch is
+ * always available without merging the ring. Bucket sketches are only allocated once a bucket receives a value. Not
+ * thread safe.
+ */
+public class SketchRing {
+
+    private final long bucketMillis;
+
+    private final double relativeError;
+
+    private long[] indexes;
+
+    private QuantileSketch[] sketches;
+
+    private final QuantileSketch windowSketch;
+
+    private long oldestIndex = Long.MIN_VALUE;
+
+    public SketchRing(long bucketMillis, long windowMillis, double relativeError) {
+        this.bucketMillis = bucketMillis;
+        this.relativeError = relativeError;
+        this.indexes = new long[capacityFor(windowMillis)];
+        this.sketches = new QuantileSketch[indexes.length];
+        Arrays.fill(indexes, Long.MIN_VALUE);
+        this.windowSketch = new QuantileSketch(relativeError);
+    }
+
+    public void ensureCapacity(long windowMillis) {
+        int capacity = capacityFor(windowMillis);
+        if (capacity <= indexes.length) {
+            return;
+        }
+        long[] resizedIndexes = new long[capacity];
+        QuantileSketch[] resizedSketches = new QuantileSketch[capacity];
+        Arrays.fill(resizedIndexes, Long.MIN_VALUE);
+        for (int slot = 0; slot < indexes.length; slot++) {
+            if (indexes[slot] != Long.MIN_VALUE) {
+                int resizedSlot = slotOf(indexes[slot], capacity);
+                resizedIndexes[resizedSlot] = indexes[slot];
+                resizedSketches[resizedSlot] = sketches[slot];
+            }
+        }
+        this.indexes = resizedIndexes;
+        this.sketches = resizedSketches;
+    }
+
+    public void add(long timestampMillis, double value) {
+        long index = Math.floorDiv(timestampMillis, bucketMillis);
+        int slot = slotOf(index, indexes.length);
+        if (index < oldestIndex || indexes[slot] > index) {
+            return;
+        }
+        if (indexes[slot] < index) {
+            evict(slot);
+            indexes[slot] = index;
+        }
+        if (sketches[slot] == null) {
+            sketches[slot] = new QuantileSketch(relativeError);
+        }
+        sketches[slot].add(value);
+        windowSketch.add(value);
+    }
+
+    /**
+     * Drops every bucket that only holds transactions not newer than {@code fromMillis}.
+     */
+    public void expire(long fromMillis) {
+        long expiredBefore = Math.floorDiv(fromMillis + 1, bucketMillis);
+        if (expiredBefore <= oldestIndex) {
+            return;
+        }
+        if (oldestIndex == Long.MIN_VALUE || expiredBefore - oldestIndex >= indexes.length) {
+            for (int slot = 0; slot < indexes.length; slot++) {
+                if (indexes[slot] < expiredBefore) {
+                    evict(slot);
+                }
+            }
+        }
+        else {
+            for (long index = oldestIndex; index < expiredBefore; index++) {
+                int slot = slotOf(index, indexes.length);
+                if (indexes[slot] == index) {
+                    evict(slot);
+                }
+            }
+        }
+        oldestIndex = expiredBefore;
+    }
+
+    public void mergeWindow(QuantileSketch result) {
+        result.merge(windowSketch);
+    }
+
+    /**
+     * Merges into {@code result} the sketch of every bucket that still holds transactions newer than
+     * {@code fromMillis} (exclusive) and not newer than {@code toMillis}.
+     */
+    public void aggregate(long fromMillis, long toMillis, QuantileSketch result) {
+        long oldest = Math.floorDiv(fromMillis + 1, bucketMillis);
+        long newest = Math.floorDiv(toMillis, bucketMillis);
+        for (int slot = 0; slot < indexes.length; slot++) {
+            if (indexes[slot] >= oldest && indexes[slot] <= newest && sketches[slot] != null) {
+                result.merge(sketches[slot]);
+            }
+        }
+    }
+
+    private void evict(int slot) {
+        if (sketches[slot] != null && sketches[slot].getCount() > 0) {
+            windowSketch.subtract(sketches[slot]);
+            sketches[slot].clear();
+        }
+        indexes[slot] = Long.MIN_VALUE;
+    }
+
+    private int capacityFor(long windowMillis) {
+        return (int) (windowMillis / bucketMillis) + 3;
+    }
+
+    private static int slotOf(long index, int capacity) {
+        return (int) Math.floorMod(index, (long) capacity);
+    }
+}
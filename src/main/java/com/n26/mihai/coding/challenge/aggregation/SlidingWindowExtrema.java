@@ -0,0 +1,112 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Min and max over the slots of a {@link BucketRing}, kept as an implicit segment tree whose leaves are the per-bucket
+ * extrema. The window extrema are read from the root in O(1). Updating a leaf stops climbing as soon as a node does
+ * not change, so adding an amount that does not beat its bucket's extrema costs O(1); a leaf is only cleared once per
+ * bucket expiry, which keeps updates amortized O(1) per transaction. Memory depends on the number of slots only.
+ */
+public class SlidingWindowExtrema {
+
+    private final int leaves;
+
+    private final long[] fixedMin;
+
+    private final long[] fixedMax;
+
+    private BigDecimal[] decimalMin;
+
+    private BigDecimal[] decimalMax;
+
+    public SlidingWindowExtrema(int slots) {
+        this.leaves = Integer.highestOneBit(Math.max(slots, 2) - 1) << 1;
+        this.fixedMin = new long[2 * leaves];
+        this.fixedMax = new long[2 * leaves];
+        Arrays.fill(fixedMin, Long.MAX_VALUE);
+        Arrays.fill(fixedMax, Long.MIN_VALUE);
+    }
+
+    public long fixedMin() {
+        return fixedMin[1];
+    }
+
+    public long fixedMax() {
+        return fixedMax[1];
+    }
+
+    public BigDecimal decimalMin() {
+        return decimalMin == null ? null : decimalMin[1];
+    }
+
+    public BigDecimal decimalMax() {
+        return decimalMax == null ? null : decimalMax[1];
+    }
+
+    public void update(int slot, StatisticsBucket bucket) {
+        int leaf = slot + leaves;
+        if (fixedMin[leaf] != bucket.getFixedMin()) {
+            fixedMin[leaf] = bucket.getFixedMin();
+            for (int node = leaf >> 1; node > 0; node >>= 1) {
+                long value = Math.min(fixedMin[2 * node], fixedMin[2 * node + 1]);
+                if (fixedMin[node] == value) {
+                    break;
+                }
+                fixedMin[node] = value;
+            }
+        }
+        if (fixedMax[leaf] != bucket.getFixedMax()) {
+            fixedMax[leaf] = bucket.getFixedMax();
+            for (int node = leaf >> 1; node > 0; node >>= 1) {
+                long value = Math.max(fixedMax[2 * node], fixedMax[2 * node + 1]);
+                if (fixedMax[node] == value) {
+                    break;
+                }
+                fixedMax[node] = value;
+            }
+        }
+        if (decimalMin == null && bucket.getDecimalMin() == null) {
+            return;
+        }
+        if (decimalMin == null) {
+            decimalMin = new BigDecimal[2 * leaves];
+            decimalMax = new BigDecimal[2 * leaves];
+        }
+        if (decimalMin[leaf] != bucket.getDecimalMin()) {
+            decimalMin[leaf] = bucket.getDecimalMin();
+            for (int node = leaf >> 1; node > 0; node >>= 1) {
+                BigDecimal value = lower(decimalMin[2 * node], decimalMin[2 * node + 1]);
+                if (decimalMin[node] == value) {
+                    break;
+                }
+                decimalMin[node] = value;
+            }
+        }
+        if (decimalMax[leaf] != bucket.getDecimalMax()) {
+            decimalMax[leaf] = bucket.getDecimalMax();
+            for (int node = leaf >> 1; node > 0; node >>= 1) {
+                BigDecimal value = higher(decimalMax[2 * node], decimalMax[2 * node + 1]);
+                if (decimalMax[node] == value) {
+                    break;
+                }
+                decimalMax[node] = value;
+            }
+        }
+    }
+
+    private static BigDecimal lower(BigDecimal left, BigDecimal right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        return right.compareTo(left) < 0 ? right : left;
+    }
+
+    private static BigDecimal higher(BigDecimal left, BigDecimal right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        return right.compareTo(left) > 0 ? right : left;
+    }
+}
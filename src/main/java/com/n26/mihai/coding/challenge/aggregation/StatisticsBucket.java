@@ -0,0 +1,197 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Count, sum, min and max of the transactions whose timestamp falls in one time bucket.
+ * <p>
+ * Amounts that fit a long once scaled by {@code decimal-scale} are kept as primitive fixed-point values; the part of
+ * the fixed-point sum that no longer fits a long spills into {@code fixedSumOverflow}. Amounts that do not fit at all
+ * are kept in the decimal fields. {@link #sum(int)}, {@link #min(int)} and {@link #max(int)} combine both.
+ */
+@Getter
+public class StatisticsBucket {
+
+    private long index;
+
+    private long count;
+
+    private long fixedSum;
+
+    private BigInteger fixedSumOverflow;
+
+    private long fixedMin = Long.MAX_VALUE;
+
+    private long fixedMax = Long.MIN_VALUE;
+
+    private BigDecimal decimalSum;
+
+    private BigDecimal decimalMin;
+
+    private BigDecimal decimalMax;
+
+    public StatisticsBucket(long index) {
+        this.index = index;
+    }
+
+    public void reset(long index) {
+        this.index = index;
+        this.count = 0;
+        this.fixedSum = 0;
+        this.fixedSumOverflow = null;
+        this.fixedMin = Long.MAX_VALUE;
+        this.fixedMax = Long.MIN_VALUE;
+        this.decimalSum = null;
+        this.decimalMin = null;
+        this.decimalMax = null;
+    }
+
+    public boolean hasFixedAmounts() {
+        return fixedMin <= fixedMax;
+    }
+
+    public void add(long amount) {
+        this.count++;
+        addFixedSum(amount, null);
+        if (amount < this.fixedMin) {
+            this.fixedMin = amount;
+        }
+        if (amount > this.fixedMax) {
+            this.fixedMax = amount;
+        }
+    }
+
+    public void add(BigDecimal amount) {
+        this.count++;
+        addDecimal(amount, amount, amount);
+    }
+
+    public void add(long amount, BigDecimal decimalAmount) {
+        if (decimalAmount == null) {
+            add(amount);
+        }
+        else {
+            add(decimalAmount);
+        }
+    }
+
+    public void merge(StatisticsBucket other) {
+        if (other.count == 0) {
+            return;
+        }
+        this.count += other.count;
+        if (other.hasFixedAmounts()) {
+            addFixedSum(other.fixedSum, other.fixedSumOverflow);
+            this.fixedMin = Math.min(this.fixedMin, other.fixedMin);
+            this.fixedMax = Math.max(this.fixedMax, other.fixedMax);
+        }
+        if (other.decimalMin != null) {
+            addDecimal(other.decimalSum, other.decimalMin, other.decimalMax);
+        }
+    }
+
+    /**
+     * Merges the count, sum, min and max of fixed-point amounts aggregated elsewhere.
+     */
+    public void merge(long count, long fixedSum, long fixedMin, long fixedMax) {
+        if (count == 0) {
+            return;
+        }
+        this.count += count;
+        addFixedSum(fixedSum, null);
+        this.fixedMin = Math.min(this.fixedMin, fixedMin);
+        this.fixedMax = Math.max(this.fixedMax, fixedMax);
+    }
+
+    /**
+     * Merges the count, sum, min and max of decimal amounts aggregated elsewhere.
+     */
+    public void merge(long count, BigDecimal decimalSum, BigDecimal decimalMin, BigDecimal decimalMax) {
+        if (count == 0) {
+            return;
+        }
+        this.count += count;
+        addDecimal(decimalSum, decimalMin, decimalMax);
+    }
+
+    /**
+     * Removes the count and sum of a bucket previously merged or added into this one. Min and max are left alone;
+     * callers that subtract keep their extrema elsewhere and hand them back through {@link #setExtrema}.
+     */
+    public void subtract(StatisticsBucket other) {
+        this.count -= other.count;
+        if (this.count == 0) {
+            reset(this.index);
+            return;
+        }
+        long sum = this.fixedSum - other.fixedSum;
+        if (((this.fixedSum ^ other.fixedSum) & (this.fixedSum ^ sum)) < 0) {
+            BigInteger exact = BigInteger.valueOf(this.fixedSum).subtract(BigInteger.valueOf(other.fixedSum));
+            this.fixedSumOverflow = this.fixedSumOverflow == null ? exact : this.fixedSumOverflow.add(exact);
+            sum = 0;
+        }
+        this.fixedSum = sum;
+        if (other.fixedSumOverflow != null) {
+            this.fixedSumOverflow = this.fixedSumOverflow == null ? other.fixedSumOverflow.negate() : this.fixedSumOverflow.subtract(other.fixedSumOverflow);
+        }
+        if (other.decimalSum != null) {
+            this.decimalSum = this.decimalSum.subtract(other.decimalSum);
+        }
+    }
+
+    void setExtrema(long fixedMin, long fixedMax, BigDecimal decimalMin, BigDecimal decimalMax) {
+        this.fixedMin = fixedMin;
+        this.fixedMax = fixedMax;
+        this.decimalMin = decimalMin;
+        this.decimalMax = decimalMax;
+    }
+
+    public BigDecimal sum(int scale) {
+        BigDecimal sum = this.fixedSumOverflow == null
+                ? BigDecimal.valueOf(this.fixedSum, scale)
+                : new BigDecimal(this.fixedSumOverflow.add(BigInteger.valueOf(this.fixedSum)), scale);
+        return this.decimalSum == null ? sum : sum.add(this.decimalSum);
+    }
+
+    public BigDecimal min(int scale) {
+        if (!hasFixedAmounts()) {
+            return this.decimalMin;
+        }
+        BigDecimal min = BigDecimal.valueOf(this.fixedMin, scale);
+        return this.decimalMin == null || min.compareTo(this.decimalMin) <= 0 ? min : this.decimalMin;
+    }
+
+    public BigDecimal max(int scale) {
+        if (!hasFixedAmounts()) {
+            return this.decimalMax;
+        }
+        BigDecimal max = BigDecimal.valueOf(this.fixedMax, scale);
+        return this.decimalMax == null || max.compareTo(this.decimalMax) >= 0 ? max : this.decimalMax;
+    }
+
+    private void addFixedSum(long amount, BigInteger overflow) {
+        long sum = this.fixedSum + amount;
+        if (((this.fixedSum ^ sum) & (amount ^ sum)) < 0) {
+            BigInteger spilled = BigInteger.valueOf(this.fixedSum);
+            this.fixedSumOverflow = this.fixedSumOverflow == null ? spilled : this.fixedSumOverflow.add(spilled);
+            sum = amount;
+        }
+        this.fixedSum = sum;
+        if (overflow != null) {
+            this.fixedSumOverflow = this.fixedSumOverflow == null ? overflow : this.fixedSumOverflow.add(overflow);
+        }
+    }
+
+    private void addDecimal(BigDecimal sum, BigDecimal min, BigDecimal max) {
+        this.decimalSum = this.decimalSum == null ? sum : this.decimalSum.add(sum);
+        if (this.decimalMin == null || min.compareTo(this.decimalMin) < 0) {
+            this.decimalMin = min;
+        }
+        if (this.decimalMax == null || max.compareTo(this.decimalMax) > 0) {
+            this.decimalMax = max;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+
+import java.math.BigDecimal;
+
+/**
+ * Everything kept for one stream of transactions: the {@link BucketRing} with count, sum, min and max and, when
+ * percentiles are enabled, the {@link SketchRing}.
+ * <p>
+ * Windows longer than {@code transaction-life-millis} are answered from a cascade of coarser rings, like a
+ * hierarchical timing wheel. Level k has {@code window-level-slots} buckets, each {@code window-level-factor} times
+ * wider than those of level k-1, and holds the transactions that are older than every finer level can hold; a bucket
+ * expiring from one level is merged into the next. Levels are added until they reach {@code max-window-millis}, so
+ * memory grows with the logarithm of the longest window. A window is precise to the bucket width of the level its
+ * start falls into. Not thread safe.
+ */
+public class WindowAggregator {
+
+    private final ApplicationProperties applicationProperties;
+
+    private final BucketRing[] levels;
+
+    private final SketchRing sketchRing;
+
+    private final double fixedPointUnit;
+
+    public WindowAggregator(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+        long windowMillis = applicationProperties.getTransactionLifeMillis();
+        int slots = applicationProperties.getWindowLevelSlots();
+        int levelCount = 1;
+        long bucketMillis = applicationProperties.getBucketMillis();
+        for (long ageMillis = windowMillis; ageMillis < applicationProperties.getMaxWindowMillis(); levelCount++) {
+            bucketMillis *= applicationProperties.getWindowLevelFactor();
+            ageMillis += bucketMillis * slots;
+        }
+        this.levels = new BucketRing[levelCount];
+        for (int level = levelCount - 1; level > 0; level--) {
+            levels[level] = new BucketRing(bucketMillis, bucketMillis * slots, level == levelCount - 1 ? null : levels[level + 1]);
+            bucketMillis /= applicationProperties.getWindowLevelFactor();
+        }
+        levels[0] = new BucketRing(applicationProperties.getBucketMillis(), windowMillis, levelCount > 1 ? levels[1] : null);
+        this.sketchRing = applicationProperties.getPercentilesEnabled()
+                ? new SketchRing(applicationProperties.getPercentileBucketMillis(), windowMillis, applicationProperties.getPercentileRelativeError())
+                : null;
+        this.fixedPointUnit = Math.pow(10, -applicationProperties.getDecimalScale());
+    }
+
+    public void add(long timestampMillis, long amount, BigDecimal decimalAmount) {
+        long windowMillis = applicationProperties.getTransactionLifeMillis();
+        levels[0].ensureCapacity(windowMillis);
+        if (!levels[0].add(timestampMillis, amount, decimalAmount) || sketchRing == null) {
+            return;
+        }
+        sketchRing.ensureCapacity(windowMillis);
+        sketchRing.add(timestampMillis, decimalAmount == null ? amount * fixedPointUnit : decimalAmount.doubleValue());
+    }
+
+    /**
+     * Expires the transactions not newer than {@code fromMillis} and merges the remaining ones into {@code result} and,
+     * when it is not null, {@code sketchResult}. Expired buckets move on to the coarser levels.
+     */
+    public void aggregateWindow(long fromMillis, StatisticsBucket result, QuantileSketch sketchResult) {
+        long ageMillis = applicationProperties.getTransactionLifeMillis();
+        levels[0].expire(fromMillis);
+        for (int level = 1; level < levels.length; level++) {
+            ageMillis += levels[level].getBucketMillis() * applicationProperties.getWindowLevelSlots();
+            levels[level].expire(fromMillis + applicationProperties.getTransactionLifeMillis() - ageMillis);
+        }
+        levels[0].aggregateWindow(result);
+        if (sketchRing != null && sketchResult != null) {
+            sketchRing.expire(fromMillis);
+            sketchRing.mergeWindow(sketchResult);
+        }
+    }
+
+    /**
+     * @return start of the oldest bucket still counted in the window, or {@link Long#MIN_VALUE} when it is empty
+     */
+    public long oldestMillis() {
+        return levels[0].oldestMillis();
+    }
+
+    /**
+     * Merges the finest buckets newer than {@code fromMillis} into {@code result}, which must use
+     * {@code bucket-millis} buckets.
+     */
+    public void collect(long fromMillis, PartialAggregates result) {
+        levels[0].collect(fromMillis, result);
+    }
+
+    /**
+     * Merges into {@code result} the transactions newer than {@code fromMillis} (exclusive) and not newer than
+     * {@code toMillis} from every level, and into {@code sketchResult}, when it is not null, those the sketches still
+     * hold. Does not expire anything.
+     */
+    public void aggregate(long fromMillis, long toMillis, StatisticsBucket result, QuantileSketch sketchResult) {
+        for (BucketRing level : levels) {
+            level.aggregate(fromMillis, toMillis, result);
+        }
+        if (sketchRing != null && sketchResult != null) {
+            sketchRing.aggregate(fromMillis, toMillis, sketchResult);
+        }
+    }
+}
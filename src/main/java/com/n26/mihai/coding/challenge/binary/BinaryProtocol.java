@@ -0,0 +1,27 @@
+package com.n26.mihai.coding.challenge.binary;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+
+/**
+ * Wire format of the binary listener, big-endian. A request is a batch of fixed-size frames and is answered with the
+ * status counts of the batch:
+ * <pre>
+ * batch header: frame count (int), scale (byte), key bytes (byte)
+ * frame:        timestamp millis (long), amount unscaled at the batch scale (long),
+ *               key as UTF-8 padded with zeros to the batch key bytes, all zeros for none
+ * reply:        status count (byte), then the count of every {@link TransactionStatus} in declaration order (int)
+ * </pre>
+ * A batch holds at most {@code binary-max-batch-frames} frames, so no count exceeds the int range. Batches can be
+ * pipelined; replies come back in order.
+ */
+public final class BinaryProtocol {
+
+    public static final int BATCH_HEADER_BYTES = 4 + 1 + 1;
+
+    public static final int FRAME_BYTES = 8 + 8;
+
+    public static final int REPLY_BYTES = 1 + 4 * TransactionStatus.values().length;
+
+    private BinaryProtocol() {
+    }
+}
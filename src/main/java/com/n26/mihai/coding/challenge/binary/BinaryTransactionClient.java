@@ -0,0 +1,120 @@
+package com.n26.mihai.coding.challenge.binary;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking client of {@link BinaryTransactionListener}. Frames are added to a reusable batch and sent with
+ * {@link #send()}, which waits for the batch's status counts. Not thread safe.
+ */
+public class BinaryTransactionClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+
+    private final int scale;
+
+    private final int keyBytes;
+
+    private final int maxFrames;
+
+    private final ByteBuffer batch;
+
+    private final ByteBuffer reply = ByteBuffer.allocate(1 + 4 * 255);
+
+    private final long[] statusCounts = new long[TransactionStatus.values().length];
+
+    private int size;
+
+    /**
+     * @param scale     scale of the amounts, best the server's {@code decimal-scale}
+     * @param keyBytes  bytes reserved for the key of every frame, 0 when transactions have no key
+     * @param maxFrames frames per batch, at most the server's {@code binary-max-batch-frames}
+     */
+    public BinaryTransactionClient(InetSocketAddress address, int scale, int keyBytes, int maxFrames) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.scale = scale;
+        this.keyBytes = keyBytes;
+        this.maxFrames = maxFrames;
+        this.batch = ByteBuffer.allocate(BinaryProtocol.BATCH_HEADER_BYTES + maxFrames * (BinaryProtocol.FRAME_BYTES + keyBytes));
+        this.batch.position(BinaryProtocol.BATCH_HEADER_BYTES);
+    }
+
+    /**
+     * @param key the UTF-8 bytes of the key, or null for none
+     */
+    public void add(long timestampMillis, long unscaledAmount, byte[] key) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full");
+        }
+        if (key != null && key.length > keyBytes) {
+            throw new IllegalArgumentException("Key of " + key.length + " bytes does not fit " + keyBytes + " bytes");
+        }
+        batch.putLong(timestampMillis);
+        batch.putLong(unscaledAmount);
+        int padding = keyBytes;
+        if (key != null) {
+            batch.put(key);
+            padding -= key.length;
+        }
+        for (; padding > 0; padding--) {
+            batch.put((byte) 0);
+        }
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == maxFrames;
+    }
+
+    /**
+     * Sends the batch and starts a new one.
+     *
+     * @return the number of transactions of each {@link TransactionStatus} by ordinal, overwritten by the next send
+     */
+    public long[] send() throws IOException {
+        batch.putInt(0, size);
+        batch.put(4, (byte) scale);
+        batch.put(5, (byte) keyBytes);
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        batch.clear();
+        batch.position(BinaryProtocol.BATCH_HEADER_BYTES);
+        size = 0;
+        reply.clear();
+        reply.limit(1);
+        readFully(reply);
+        int statuses = reply.get(0) & 0xFF;
+        reply.limit(1 + 4 * statuses);
+        readFully(reply);
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = i < statuses ? reply.getInt(1 + 4 * i) : 0;
+        }
+        return statusCounts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by the listener");
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.n26.mihai.coding.challenge.binary;
+
+import com.n26.mihai.coding.challenge.dto.TransactionDTO;
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.StatisticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Side listener for internal producers, speaking {@link BinaryProtocol} over plain NIO channels instead of JSON over
+ * HTTP. Only started when {@code binary-listener-enabled} is set.
+ * <p>
+ * One selector thread serves every connection. Each connection owns a buffer that fits its largest batch and the
+ * primitive arrays a batch is decoded into, so frames are handed to
+ * {@link StatisticsService#createTransactions(long[], long[], int, String[], int, long[])} without creating an object
+ * per transaction; a key is only decoded when it differs from the previous frame's. That call can block while the
+ * ingest queue is full, so it runs on one of {@code binary-worker-threads} workers and the selector thread never
+ * waits on it. A connection stops being read while one of its batches is being created or its reply cannot be
+ * written, which pushes back on producers that do not read replies. Malformed batches close the connection.
+ */
+@Component
+@Slf4j
+public class BinaryTransactionListener {
+
+    private final StatisticsService statisticsService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread listenerThread;
+
+    private ExecutorService workers;
+
+    private final Queue<Connection> createdBatches = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    public BinaryTransactionListener(StatisticsService statisticsService, ApplicationProperties applicationProperties) {
+        this.statisticsService = statisticsService;
+        this.applicationProperties = applicationProperties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!applicationProperties.getBinaryListenerEnabled()) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(applicationProperties.getBinaryListenerPort()));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        AtomicInteger workerCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(applicationProperties.getBinaryWorkerThreads(), runnable -> {
+            Thread worker = new Thread(runnable, "binary-worker-" + workerCount.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        running = true;
+        listenerThread = new Thread(this::listen, "binary-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        log.info("Binary transaction listener started on port {}.", getLocalPort());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (listenerThread == null) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        listenerThread.join();
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.SECONDS);
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * @return the port the listener is bound to, or -1 when it is disabled
+     */
+    public int getLocalPort() {
+        return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                log.error("Binary transaction listener stopped", e);
+                return;
+            }
+            replyCreatedBatches();
+            for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    }
+                    else if (key.isReadable()) {
+                        read((Connection) key.attachment());
+                    }
+                    else if (key.isWritable()) {
+                        write((Connection) key.attachment());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Closing binary connection: {}", e.toString());
+                    close(key);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(key, channel, applicationProperties.getBinaryMaxBatchFrames()));
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.input) < 0) {
+            close(connection.key);
+            return;
+        }
+        process(connection);
+    }
+
+    private void write(Connection connection) throws IOException {
+        connection.channel.write(connection.reply);
+        if (!connection.reply.hasRemaining()) {
+            process(connection);
+        }
+    }
+
+    /**
+     * Decodes the next complete batch in the input and hands it to a worker, unless one is already being created or its
+     * reply cannot be written yet.
+     */
+    private void process(Connection connection) throws IOException {
+        ByteBuffer input = connection.input;
+        input.flip();
+        try {
+            if (!connection.creating && !connection.reply.hasRemaining() && input.remaining() >= BinaryProtocol.BATCH_HEADER_BYTES) {
+                int start = input.position();
+                int frames = input.getInt(start);
+                int scale = input.get(start + 4);
+                int keyBytes = input.get(start + 5) & 0xFF;
+                if (frames < 0 || frames > connection.timestamps.length || keyBytes > TransactionDTO.KEY_MAX_LENGTH) {
+                    throw new ProtocolException("Malformed batch of " + frames + " frames with " + keyBytes + " key bytes");
+                }
+                if (input.remaining() >= BinaryProtocol.BATCH_HEADER_BYTES + frames * (BinaryProtocol.FRAME_BYTES + keyBytes)) {
+                    input.position(start + BinaryProtocol.BATCH_HEADER_BYTES);
+                    for (int i = 0; i < frames; i++) {
+                        connection.timestamps[i] = input.getLong();
+                        connection.amounts[i] = input.getLong();
+                        connection.keys[i] = keyBytes == 0 ? null : connection.readKey(keyBytes);
+                    }
+                    create(connection, scale, frames);
+                }
+            }
+        } finally {
+            input.compact();
+        }
+        connection.key.interestOps(connection.creating ? 0 : connection.reply.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void create(Connection connection, int scale, int frames) {
+        connection.creating = true;
+        workers.execute(() -> {
+            try {
+                statisticsService.createTransactions(connection.timestamps, connection.amounts, scale, connection.keys, frames, connection.statusCounts);
+            } catch (RuntimeException e) {
+                connection.failure = e;
+            }
+            createdBatches.add(connection);
+            selector.wakeup();
+        });
+    }
+
+    /**
+     * Replies to the batches the workers have created and moves on to the next batch of each connection.
+     */
+    private void replyCreatedBatches() {
+        for (Connection connection; (connection = createdBatches.poll()) != null; ) {
+            connection.creating = false;
+            if (!connection.key.isValid()) {
+                continue;
+            }
+            try {
+                if (connection.failure != null) {
+                    throw connection.failure;
+                }
+                reply(connection);
+                process(connection);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Closing binary connection: {}", e.toString());
+                close(connection.key);
+            }
+        }
+    }
+
+    /**
+     * Counts fit the reply's ints because a batch holds at most {@code binary-max-batch-frames} frames, itself an int.
+     */
+    private void reply(Connection connection) throws IOException {
+        ByteBuffer reply = connection.reply;
+        reply.clear();
+        reply.put((byte) connection.statusCounts.length);
+        for (long count : connection.statusCounts) {
+            reply.putInt(Math.toIntExact(count));
+        }
+        reply.flip();
+        connection.channel.write(reply);
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Could not close binary connection", e);
+        }
+    }
+
+    private static class Connection {
+
+        private final SelectionKey key;
+
+        private final SocketChannel channel;
+
+        private final ByteBuffer input;
+
+        private final ByteBuffer reply = ByteBuffer.allocate(BinaryProtocol.REPLY_BYTES);
+
+        private final long[] timestamps;
+
+        private final long[] amounts;
+
+        private final String[] keys;
+
+        private final long[] statusCounts = new long[TransactionStatus.values().length];
+
+        private final byte[] lastKeyBytes = new byte[TransactionDTO.KEY_MAX_LENGTH];
+
+        private int lastKeyLength;
+
+        private String lastKey;
+
+        private boolean creating;
+
+        private RuntimeException failure;
+
+        private Connection(SelectionKey key, SocketChannel channel, int maxFrames) {
+            this.key = key;
+            this.channel = channel;
+            this.input = ByteBuffer.allocate(BinaryProtocol.BATCH_HEADER_BYTES + maxFrames * (BinaryProtocol.FRAME_BYTES + TransactionDTO.KEY_MAX_LENGTH));
+            this.timestamps = new long[maxFrames];
+            this.amounts = new long[maxFrames];
+            this.keys = new String[maxFrames];
+            this.reply.limit(0);
+        }
+
+        /**
+         * Reads a zero-padded key of {@code keyBytes} bytes, reusing the previous key when the bytes are the same.
+         */
+        private String readKey(int keyBytes) {
+            byte[] bytes = input.array();
+            int offset = input.arrayOffset() + input.position();
+            input.position(input.position() + keyBytes);
+            int length = 0;
+            while (length < keyBytes && bytes[offset + length] != 0) {
+                length++;
+            }
+            if (length == 0) {
+                return null;
+            }
+            if (lastKey != null && length == lastKeyLength && sameAsLastKey(bytes, offset, length)) {
+                return lastKey;
+            }
+            System.arraycopy(bytes, offset, lastKeyBytes, 0, length);
+            lastKeyLength = length;
+            lastKey = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            return lastKey;
+        }
+
+        private boolean sameAsLastKey(byte[] bytes, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[offset + i] != lastKeyBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
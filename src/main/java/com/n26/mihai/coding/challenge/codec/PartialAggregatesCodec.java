@@ -0,0 +1,123 @@
+package com.n26.mihai.coding.challenge.codec;
+
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Binary form of {@link PartialAggregates}, exchanged between nodes in distributed mode:
+ * <pre>
+ * header: magic (int), version (byte), bucketMillis (long), scale (int), bucket count (int)
+ * bucket: start millis (long), count (long), kind (byte), then
+ *         kind 0: sum, min, max as fixed-point longs at the given scale
+ *         kind 1: sum, min, max as length-prefixed unscaled big-endian two's complement bytes
+ * </pre>
+ */
+public final class PartialAggregatesCodec {
+
+    public static final String MEDIA_TYPE = "application/vnd.n26.partial-aggregates";
+
+    private static final int MAGIC = 0x4E323650;
+
+    private static final byte VERSION = 1;
+
+    private static final byte FIXED_POINT = 0;
+
+    private static final byte DECIMAL = 1;
+
+    private PartialAggregatesCodec() {
+    }
+
+    public static byte[] encode(PartialAggregates partialAggregates, int scale) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + partialAggregates.getBuckets().size() * 41);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(partialAggregates.getBucketMillis());
+            out.writeInt(scale);
+            out.writeInt(partialAggregates.getBuckets().size());
+            for (StatisticsBucket bucket : partialAggregates.getBuckets()) {
+                out.writeLong(bucket.getIndex() * partialAggregates.getBucketMillis());
+                out.writeLong(bucket.getCount());
+                if (bucket.getDecimalMin() == null && bucket.getFixedSumOverflow() == null) {
+                    writeFixedPoint(out, bucket.getFixedSum(), bucket.getFixedMin(), bucket.getFixedMax());
+                    continue;
+                }
+                BigInteger sum = bucket.sum(scale).setScale(scale).unscaledValue();
+                BigInteger min = bucket.min(scale).setScale(scale).unscaledValue();
+                BigInteger max = bucket.max(scale).setScale(scale).unscaledValue();
+                if (sum.bitLength() < 64 && min.bitLength() < 64 && max.bitLength() < 64) {
+                    writeFixedPoint(out, sum.longValue(), min.longValue(), max.longValue());
+                }
+                else {
+                    out.writeByte(DECIMAL);
+                    writeBigInteger(out, sum);
+                    writeBigInteger(out, min);
+                    writeBigInteger(out, max);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the bytes are not partial aggregates at the expected scale
+     */
+    public static PartialAggregates decode(byte[] encoded, int expectedScale) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Not partial aggregates");
+            }
+            long bucketMillis = in.readLong();
+            int scale = in.readInt();
+            if (scale != expectedScale) {
+                throw new IllegalArgumentException("Partial aggregates use scale " + scale + " instead of " + expectedScale);
+            }
+            PartialAggregates partialAggregates = new PartialAggregates(bucketMillis);
+            StatisticsBucket bucket = new StatisticsBucket(0);
+            for (int buckets = in.readInt(); buckets > 0; buckets--) {
+                bucket.reset(Math.floorDiv(in.readLong(), bucketMillis));
+                long count = in.readLong();
+                if (in.readByte() == FIXED_POINT) {
+                    bucket.merge(count, in.readLong(), in.readLong(), in.readLong());
+                }
+                else {
+                    bucket.merge(count, readBigDecimal(in, scale), readBigDecimal(in, scale), readBigDecimal(in, scale));
+                }
+                partialAggregates.merge(bucket);
+            }
+            return partialAggregates;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated partial aggregates", e);
+        }
+    }
+
+    private static void writeFixedPoint(DataOutputStream out, long sum, long min, long max) throws IOException {
+        out.writeByte(FIXED_POINT);
+        out.writeLong(sum);
+        out.writeLong(min);
+        out.writeLong(max);
+    }
+
+    private static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigDecimal readBigDecimal(DataInputStream in, int scale) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+}
@@ -0,0 +1,202 @@
+package com.n26.mihai.coding.challenge.codec;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n26.mihai.coding.challenge.dto.TransactionDTO;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.ParseException;
+
+/**
+ * Decodes one transaction object straight into primitives, with the timestamp as epoch millis and the amount unscaled
+ * at {@code scale}, in place of binding a {@link TransactionDTO}.
+ * <p>
+ * Plain JSON numbers, which is what clients send, are read from the parser's own buffer, so no {@link BigDecimal} or
+ * {@link java.util.Date} is created. The other forms the DTO binding accepts take a slower path with the same result:
+ * timestamps as strings in the mapper's date format, amounts as strings, with exponents, with more decimals than
+ * {@code scale} (rounded half even), or too large for a long, which are then kept in {@link #getDecimalAmount()}.
+ * Unknown fields are skipped and null counts as missing.
+ */
+public class TransactionDecoder {
+
+    private final ObjectMapper objectMapper;
+
+    private final int scale;
+
+    private boolean hasTimestamp;
+
+    @Getter
+    private long timestampMillis;
+
+    private boolean hasAmount;
+
+    @Getter
+    private long amount;
+
+    @Getter
+    private BigDecimal decimalAmount;
+
+    @Getter
+    private String key;
+
+    public TransactionDecoder(ObjectMapper objectMapper, int scale) {
+        this.objectMapper = objectMapper;
+        this.scale = scale;
+    }
+
+    /**
+     * @throws JsonParseException when the input is not a transaction object
+     */
+    public void decode(InputStream inputStream) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a transaction object");
+            }
+            JsonToken token = parser.nextToken();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "timestamp":
+                        readTimestamp(parser, value);
+                        break;
+                    case "amount":
+                        readAmount(parser, value);
+                        break;
+                    case "key":
+                        readKey(parser, value);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new JsonParseException(parser, "Unterminated transaction object");
+            }
+        }
+    }
+
+    /**
+     * @return whether the transaction has a timestamp, an amount and a key of at most
+     * {@link TransactionDTO#KEY_MAX_LENGTH} characters, as the DTO's constraints require
+     */
+    public boolean isValid() {
+        return getViolation() == null;
+    }
+
+    /**
+     * @return why the transaction breaks the DTO's constraints, or null when it does not
+     */
+    public String getViolation() {
+        if (!hasTimestamp || !hasAmount) {
+            return TransactionDTO.MISSING_FIELDS_VIOLATION;
+        }
+        if (key != null && key.length() > TransactionDTO.KEY_MAX_LENGTH) {
+            return TransactionDTO.KEY_LENGTH_VIOLATION;
+        }
+        return null;
+    }
+
+    private void readTimestamp(JsonParser parser, JsonToken value) throws IOException {
+        hasTimestamp = value != JsonToken.VALUE_NULL;
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            timestampMillis = parser.getLongValue();
+        }
+        else if (value == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            hasTimestamp = !text.isEmpty();
+            if (hasTimestamp) {
+                try {
+                    timestampMillis = ((DateFormat) objectMapper.getDeserializationConfig().getDateFormat().clone()).parse(text).getTime();
+                } catch (ParseException e) {
+                    throw new JsonParseException(parser, "Malformed timestamp " + text, e);
+                }
+            }
+        }
+        else if (hasTimestamp) {
+            throw new JsonParseException(parser, "Expected a timestamp but found " + value);
+        }
+    }
+
+    private void readAmount(JsonParser parser, JsonToken value) throws IOException {
+        hasAmount = value != JsonToken.VALUE_NULL;
+        decimalAmount = null;
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            if (!readFixedPoint(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())) {
+                setAmount(parser.getDecimalValue());
+            }
+        }
+        else if (value == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            hasAmount = !text.isEmpty();
+            if (hasAmount) {
+                try {
+                    setAmount(new BigDecimal(text));
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Malformed amount " + text, e);
+                }
+            }
+        }
+        else if (hasAmount) {
+            throw new JsonParseException(parser, "Expected an amount but found " + value);
+        }
+    }
+
+    private void readKey(JsonParser parser, JsonToken value) throws IOException {
+        if (!value.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a key but found " + value);
+        }
+        key = value == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    /**
+     * Reads a plain decimal number with at most {@code scale} decimals that fits a long once scaled.
+     *
+     * @return false when the number needs the decimal path
+     */
+    private boolean readFixedPoint(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = i < end && chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c == '.') {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || (decimals >= 0 && ++decimals > scale) || value > (Long.MAX_VALUE - 9) / 10) {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+        }
+        for (int d = Math.max(decimals, 0); d < scale; d++) {
+            if (value > Long.MAX_VALUE / 10) {
+                return false;
+            }
+            value *= 10;
+        }
+        amount = negative ? -value : value;
+        return true;
+    }
+
+    private void setAmount(BigDecimal value) {
+        BigDecimal scaled = value.setScale(scale, BigDecimal.ROUND_HALF_EVEN);
+        if (scaled.unscaledValue().bitLength() < 64) {
+            amount = scaled.unscaledValue().longValue();
+        }
+        else {
+            decimalAmount = scaled;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.n26.mihai.coding.challenge.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n26.mihai.coding.challenge.dto.TransactionDTO;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads transactions one at a time from either a JSON array or newline-delimited JSON objects, so a request body is
+ * never bound as a whole. Each element is bound ahead, in {@link #hasNext()}, so reading stops before the first
+ * malformed element and it is never returned; the cause is then available from {@link #getError()}.
+ */
+public class TransactionStreamReader implements Iterator<TransactionDTO> {
+
+    private final ObjectMapper objectMapper;
+
+    private final JsonParser parser;
+
+    private boolean array;
+
+    private boolean started;
+
+    private boolean finished;
+
+    private TransactionDTO next;
+
+    @Getter
+    private String error;
+
+    public TransactionStreamReader(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(inputStream);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = read();
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public TransactionDTO next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TransactionDTO transaction = next;
+        next = null;
+        return transaction;
+    }
+
+    /**
+     * @return the next transaction, or null at the end of the input or when it is malformed
+     */
+    private TransactionDTO read() {
+        if (advance() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(parser, TransactionDTO.class);
+        } catch (IOException e) {
+            error = e.getMessage();
+            return null;
+        }
+    }
+
+    private JsonToken advance() {
+        try {
+            JsonToken token = parser.nextToken();
+            if (!started) {
+                started = true;
+                array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+            }
+            if (token == null || (array && token == JsonToken.END_ARRAY)) {
+                return JsonToken.END_ARRAY;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                error = "Expected a transaction object but found " + token;
+            }
+            return token;
+        } catch (IOException e) {
+            error = e.getMessage();
+            return JsonToken.NOT_AVAILABLE;
+        }
+    }
+}
@@ -1,16 +1,38 @@
 package com.n26.mihai.coding.challenge.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n26.mihai.coding.challenge.codec.PartialAggregatesCodec;
+import com.n26.mihai.coding.challenge.codec.TransactionDecoder;
+import com.n26.mihai.coding.challenge.codec.TransactionStreamReader;
+import com.n26.mihai.coding.challenge.dto.BatchResultDTO;
+import com.n26.mihai.coding.challenge.dto.KeyedStatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.TransactionDTO;
 import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.ClusterStatisticsService;
 import com.n26.mihai.coding.challenge.service.StatisticsService;
+import com.n26.mihai.coding.challenge.service.StatisticsSnapshot;
+import com.n26.mihai.coding.challenge.stream.StatisticsStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import javax.validation.Valid;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @RestController
@@ -19,21 +41,148 @@ public class TransactionsController {
 
     private final StatisticsService statisticsService;
 
-    @PostMapping("/transactions")
-    public ResponseEntity<String> createTransaction(@RequestBody @Valid TransactionDTO transaction){
-        log.info("Request to create new transaction with date {} and value {}", transaction.getTimestamp(), transaction.getAmount());
-        TransactionStatus status = statisticsService.createTransaction(transaction);
+    private final ClusterStatisticsService clusterStatisticsService;
+
+    private final StatisticsStream statisticsStream;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * Decodes the transaction straight into primitives rather than binding a {@link TransactionDTO}, and leaves logging
+     * to the service's periodic summary of statuses. A rejected transaction gets the same violation text whether the
+     * decoder or the service rejects it, since the service only finds a primitive transaction invalid for its key.
+     */
+    @PostMapping(value = "/transactions", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/*+json"})
+    public ResponseEntity<String> createTransaction(HttpServletRequest request) throws IOException {
+        TransactionDecoder transaction = new TransactionDecoder(objectMapper, applicationProperties.getDecimalScale());
+        try {
+            transaction.decode(request.getInputStream());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Malformed transaction: " + e.getOriginalMessage(), e);
+        }
+        if (!transaction.isValid()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(transaction.getViolation());
+        }
+        TransactionStatus status = statisticsService.createTransaction(transaction.getTimestampMillis(), transaction.getAmount(),
+                transaction.getDecimalAmount(), transaction.getKey());
         switch (status) {
             case CREATED: return ResponseEntity.status(HttpStatus.CREATED).body(null);
-            case OLD: {log.info("Transaction date is too old."); return ResponseEntity.status(HttpStatus.NO_CONTENT).body(null);}
-            case FUTURE:  {log.info("Invalid data. Transaction date is in the future"); return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Cannot create transaction in " +
-                    "the future.");}
+            case OLD: return ResponseEntity.status(HttpStatus.NO_CONTENT).body(null);
+            case FUTURE: return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Cannot create transaction in the future.");
+            case INVALID: return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(TransactionDTO.KEY_LENGTH_VIOLATION);
+            case SHED: return shed().body(null);
             default: return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    @PostMapping("/transactions/batch")
+    public ResponseEntity<BatchResultDTO> createTransactions(HttpServletRequest request) throws IOException {
+        TransactionStreamReader transactions = new TransactionStreamReader(objectMapper, request.getInputStream());
+        Map<TransactionStatus, Long> counts = statisticsService.createTransactions(transactions);
+        if (transactions.getError() != null) {
+            log.info("Transaction batch stopped at malformed input: {}", transactions.getError());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BatchResultDTO(counts, transactions.getError()));
+        }
+        if (counts.get(TransactionStatus.SHED) > 0) {
+            return shed().body(new BatchResultDTO(counts, null));
+        }
+        return ResponseEntity.ok(new BatchResultDTO(counts, null));
+    }
+
+    @GetMapping(value = "/statistics", params = {"!percentiles", "!window"})
+    public ResponseEntity<byte[]> getStatistics(WebRequest request) {
+        StatisticsSnapshot snapshot = statisticsService.getSnapshot();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(snapshot.getEtag()).contentType(MediaType.APPLICATION_JSON_UTF8).body(snapshot.getJson());
+    }
+
     @GetMapping("/statistics")
-    public ResponseEntity<StatisticsDTO> getStatistics() {
-        return ResponseEntity.ok(statisticsService.getStatistics());
+    public ResponseEntity<StatisticsDTO> getStatistics(@RequestParam(required = false) List<String> percentiles,
+                                                       @RequestParam(required = false) String window) {
+        long windowMillis = applicationProperties.getTransactionLifeMillis();
+        if (window != null) {
+            windowMillis = parseWindowMillis(window);
+            if (windowMillis <= 0 || windowMillis > Math.max(applicationProperties.getMaxWindowMillis(), applicationProperties.getTransactionLifeMillis())) {
+                log.info("Invalid window {} requested.", window);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+            if (percentiles != null && windowMillis > applicationProperties.getTransactionLifeMillis()) {
+                log.info("Percentiles requested for window {} longer than the transaction life.", window);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+        }
+        if (percentiles != null) {
+            for (String percentile : percentiles) {
+                if (!isPercentile(percentile)) {
+                    log.info("Invalid percentile {} requested.", percentile);
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+                }
+            }
+        }
+        return ResponseEntity.ok(statisticsService.getStatistics(windowMillis, percentiles));
+    }
+
+    @GetMapping(value = "/statistics/stream", produces = "text/event-stream")
+    public void streamStatistics(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        statisticsStream.subscribe(asyncContext);
+    }
+
+    @GetMapping("/statistics/partials")
+    public ResponseEntity<byte[]> getPartialAggregates() {
+        byte[] encoded = PartialAggregatesCodec.encode(statisticsService.getPartialAggregates(), applicationProperties.getDecimalScale());
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(PartialAggregatesCodec.MEDIA_TYPE)).body(encoded);
+    }
+
+    @GetMapping("/statistics/cluster")
+    public ResponseEntity<StatisticsDTO> getClusterStatistics() {
+        return ResponseEntity.ok(clusterStatisticsService.getClusterStatistics());
+    }
+
+    @GetMapping("/statistics/top")
+    public ResponseEntity<List<KeyedStatisticsDTO>> getTopStatistics(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            log.info("Invalid top limit {} requested.", limit);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        return ResponseEntity.ok(statisticsService.getTopStatistics(Math.min(limit, applicationProperties.getMaxKeys())));
+    }
+
+    @GetMapping("/statistics/{key:.+}")
+    public ResponseEntity<StatisticsDTO> getStatistics(@PathVariable String key) {
+        return ResponseEntity.ok(statisticsService.getStatistics(key));
+    }
+
+    /**
+     * Rejection of transactions that were valid but not admitted, telling the client when to try again.
+     */
+    private ResponseEntity.BodyBuilder shed() {
+        return ResponseEntity.status(applicationProperties.getAdmissionRejectStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(applicationProperties.getAdmissionRetryAfterSeconds()));
+    }
+
+    private static long parseWindowMillis(String window) {
+        try {
+            return Duration.parse(window).toMillis();
+        } catch (DateTimeParseException | ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isPercentile(String percentile) {
+        try {
+            double value = Double.parseDouble(percentile);
+            return value >= 0 && value <= 100;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 }
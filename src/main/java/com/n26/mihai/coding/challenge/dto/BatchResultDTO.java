@@ -0,0 +1,16 @@
+package com.n26.mihai.coding.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResultDTO {
+    private Map<TransactionStatus, Long> counts;
+    private String error;
+}
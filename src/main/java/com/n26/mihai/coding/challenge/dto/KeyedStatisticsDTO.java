@@ -0,0 +1,11 @@
+package com.n26.mihai.coding.challenge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class KeyedStatisticsDTO {
+    private String key;
+    private StatisticsDTO statistics;
+}
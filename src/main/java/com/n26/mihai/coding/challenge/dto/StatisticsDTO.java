@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 @Data
 @AllArgsConstructor
@@ -15,4 +16,5 @@ public class StatisticsDTO {
     private BigDecimal max;
     private BigDecimal min;
     private Long count;
+    private Map<String, BigDecimal> percentiles;
 }
@@ -4,13 +4,22 @@ import lombok.Data;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.math.BigDecimal;
 import java.util.Date;
 
 @Data
 public class TransactionDTO {
+    public static final int KEY_MAX_LENGTH = 64;
+
+    public static final String MISSING_FIELDS_VIOLATION = "Transaction needs a timestamp and an amount.";
+
+    public static final String KEY_LENGTH_VIOLATION = "Transaction key cannot be longer than " + KEY_MAX_LENGTH + " characters.";
+
     @NotNull
     private BigDecimal amount;
     @NotNull
     private Date timestamp;
+    @Size(max = KEY_MAX_LENGTH)
+    private String key;
 }
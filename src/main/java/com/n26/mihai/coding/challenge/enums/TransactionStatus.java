@@ -1,5 +1,5 @@
 package com.n26.mihai.coding.challenge.enums;
 
 public enum TransactionStatus {
-    CREATED, OLD, FUTURE
+    CREATED, OLD, FUTURE, INVALID, SHED
 }
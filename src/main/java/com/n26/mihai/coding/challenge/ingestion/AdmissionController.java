@@ -0,0 +1,95 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the transactions in flight, from admission until the applier has folded them into the window. A producer
+ * acquires one permit per valid transaction and releases it once the transaction is submitted, from when on the
+ * ingestor's backlog accounts for it; a transaction is shed when the permits held plus the backlog would exceed the
+ * limit.
+ * <p>
+ * In {@code static} mode the limit is {@code admission-max-in-flight}. In {@code adaptive} mode it starts there and
+ * follows the ingest-to-visible latency sampled by the applier: a sample above {@code admission-target-latency-millis}
+ * cuts it by a tenth, down to {@code admission-min-in-flight}, and a sample below raises it by a hundredth of the
+ * maximum. In {@code none} mode everything is admitted. Thread safe; only the applier reports latencies.
+ */
+public class AdmissionController {
+
+    private final ApplicationProperties applicationProperties;
+
+    private final LongSupplier backlog;
+
+    private final boolean enabled;
+
+    private final boolean adaptive;
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private volatile long adaptiveLimit;
+
+    public AdmissionController(ApplicationProperties applicationProperties, LongSupplier backlog) {
+        this.applicationProperties = applicationProperties;
+        this.backlog = backlog;
+        this.enabled = !"none".equals(applicationProperties.getAdmissionMode());
+        this.adaptive = "adaptive".equals(applicationProperties.getAdmissionMode());
+        this.adaptiveLimit = applicationProperties.getAdmissionMaxInFlight();
+    }
+
+    /**
+     * @return whether the transaction is admitted, in which case it must be {@link #release released} once submitted
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        if (inFlight.incrementAndGet() + backlog.getAsLong() > getLimit()) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void release(long permits) {
+        if (enabled && permits > 0) {
+            inFlight.addAndGet(-permits);
+        }
+    }
+
+    /**
+     * Called by the applier with every ingest-to-visible latency it samples.
+     */
+    public void onVisibleLatency(long latencyNanos) {
+        if (!adaptive) {
+            return;
+        }
+        long maxInFlight = applicationProperties.getAdmissionMaxInFlight();
+        long limit = Math.min(adaptiveLimit, maxInFlight);
+        if (latencyNanos > TimeUnit.MILLISECONDS.toNanos(applicationProperties.getAdmissionTargetLatencyMillis())) {
+            adaptiveLimit = Math.max(applicationProperties.getAdmissionMinInFlight(), limit - limit / 10);
+        }
+        else {
+            adaptiveLimit = Math.min(maxInFlight, limit + Math.max(1, maxInFlight / 100));
+        }
+    }
+
+    /**
+     * @return the number of transactions allowed in flight, or {@link Long#MAX_VALUE} in {@code none} mode
+     */
+    public long getLimit() {
+        if (!enabled) {
+            return Long.MAX_VALUE;
+        }
+        return adaptive ? adaptiveLimit : applicationProperties.getAdmissionMaxInFlight();
+    }
+
+    /**
+     * @return the number of transactions admitted and not applied yet
+     */
+    public long getInFlight() {
+        return inFlight.get() + backlog.getAsLong();
+    }
+}
@@ -0,0 +1,73 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.QuantileSketch;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import com.n26.mihai.coding.challenge.aggregation.WindowAggregator;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+
+import java.math.BigDecimal;
+
+/**
+ * Queues submissions in a {@link TransactionQueue} and lets the applier thread, as the only writer, fold them into a
+ * single {@link WindowAggregator} in batches.
+ */
+public class QueuedTransactionIngestor implements TransactionIngestor {
+
+    private final WindowAggregator windowAggregator;
+
+    private final TransactionQueue transactionQueue;
+
+    private final TransactionHandler applyHandler;
+
+    public QueuedTransactionIngestor(ApplicationProperties applicationProperties) {
+        this.windowAggregator = new WindowAggregator(applicationProperties);
+        this.transactionQueue = new TransactionQueue(applicationProperties.getIngestQueueSize());
+        this.applyHandler = windowAggregator::add;
+    }
+
+    @Override
+    public void submit(long timestampMillis, long amount, BigDecimal decimalAmount) {
+        transactionQueue.put(timestampMillis, amount, decimalAmount);
+    }
+
+    @Override
+    public void submit(TransactionBatch batch) {
+        transactionQueue.putAll(batch);
+    }
+
+    @Override
+    public int apply(int maxTransactions) {
+        return transactionQueue.drain(applyHandler, maxTransactions);
+    }
+
+    @Override
+    public boolean hasPending() {
+        return !transactionQueue.isEmpty();
+    }
+
+    @Override
+    public long backlog() {
+        return transactionQueue.size();
+    }
+
+    @Override
+    public void aggregateWindow(long fromMillis, StatisticsBucket result, QuantileSketch sketchResult) {
+        windowAggregator.aggregateWindow(fromMillis, result, sketchResult);
+    }
+
+    @Override
+    public void aggregate(long fromMillis, long toMillis, StatisticsBucket result, QuantileSketch sketchResult) {
+        windowAggregator.aggregate(fromMillis, toMillis, result, sketchResult);
+    }
+
+    @Override
+    public void collect(long fromMillis, PartialAggregates result) {
+        windowAggregator.collect(fromMillis, result);
+    }
+
+    @Override
+    public long oldestMillis() {
+        return windowAggregator.oldestMillis();
+    }
+}
@@ -0,0 +1,142 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.QuantileSketch;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import com.n26.mihai.coding.challenge.aggregation.WindowAggregator;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+
+import java.math.BigDecimal;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spreads writers over several independently locked {@link WindowAggregator}s, in the spirit of
+ * {@link java.util.concurrent.atomic.LongAdder}: a writer starts at the stripe picked by its thread id and moves on to
+ * the next one while it finds stripes busy. The stripes are merged when the applier thread refreshes the statistics.
+ */
+public class StripedTransactionIngestor implements TransactionIngestor {
+
+    private final Stripe[] stripes;
+
+    public StripedTransactionIngestor(ApplicationProperties applicationProperties) {
+        this.stripes = new Stripe[applicationProperties.getIngestStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(new WindowAggregator(applicationProperties));
+        }
+    }
+
+    @Override
+    public void submit(long timestampMillis, long amount, BigDecimal decimalAmount) {
+        int start = (int) (Thread.currentThread().getId() % stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(start + i) % stripes.length];
+            if (stripe.lock.tryLock()) {
+                try {
+                    stripe.windowAggregator.add(timestampMillis, amount, decimalAmount);
+                } finally {
+                    stripe.lock.unlock();
+                }
+                return;
+            }
+        }
+        Stripe stripe = stripes[start];
+        stripe.lock.lock();
+        try {
+            stripe.windowAggregator.add(timestampMillis, amount, decimalAmount);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void submit(TransactionBatch batch) {
+        Stripe stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        stripe.lock.lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                stripe.windowAggregator.add(batch.getTimestamp(i), batch.getAmount(i), batch.getDecimalAmount(i));
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public int apply(int maxTransactions) {
+        return 0;
+    }
+
+    @Override
+    public boolean hasPending() {
+        return false;
+    }
+
+    @Override
+    public long backlog() {
+        return 0;
+    }
+
+    @Override
+    public void aggregateWindow(long fromMillis, StatisticsBucket result, QuantileSketch sketchResult) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.windowAggregator.aggregateWindow(fromMillis, result, sketchResult);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void aggregate(long fromMillis, long toMillis, StatisticsBucket result, QuantileSketch sketchResult) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.windowAggregator.aggregate(fromMillis, toMillis, result, sketchResult);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void collect(long fromMillis, PartialAggregates result) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.windowAggregator.collect(fromMillis, result);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long oldestMillis() {
+        long oldestMillis = Long.MAX_VALUE;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                long stripeOldestMillis = stripe.windowAggregator.oldestMillis();
+                if (stripeOldestMillis != Long.MIN_VALUE) {
+                    oldestMillis = Math.min(oldestMillis, stripeOldestMillis);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return oldestMillis == Long.MAX_VALUE ? Long.MIN_VALUE : oldestMillis;
+    }
+
+    private static class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final WindowAggregator windowAggregator;
+
+        private Stripe(WindowAggregator windowAggregator) {
+            this.windowAggregator = windowAggregator;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import java.math.BigDecimal;
+
+/**
+ * Reusable chunk of accepted transactions handed to a {@link TransactionIngestor} in one call.
+ */
+public class TransactionBatch {
+
+    private final long[] timestamps;
+
+    private final long[] amounts;
+
+    private final BigDecimal[] decimalAmounts;
+
+    private int size;
+
+    public TransactionBatch(int capacity) {
+        this.timestamps = new long[capacity];
+        this.amounts = new long[capacity];
+        this.decimalAmounts = new BigDecimal[capacity];
+    }
+
+    public void add(long timestampMillis, long amount, BigDecimal decimalAmount) {
+        timestamps[size] = timestampMillis;
+        amounts[size] = amount;
+        decimalAmounts[size] = decimalAmount;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == timestamps.length;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            decimalAmounts[i] = null;
+        }
+        size = 0;
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    public long getAmount(int i) {
+        return amounts[i];
+    }
+
+    public BigDecimal getDecimalAmount(int i) {
+        return decimalAmounts[i];
+    }
+}
@@ -0,0 +1,10 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import java.math.BigDecimal;
+
+@FunctionalInterface
+public interface TransactionHandler {
+
+    public void onTransaction(long timestampMillis, long amount, BigDecimal decimalAmount);
+
+}
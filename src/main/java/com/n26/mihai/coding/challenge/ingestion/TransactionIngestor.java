@@ -0,0 +1,60 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.QuantileSketch;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+
+import java.math.BigDecimal;
+
+/**
+ * Write side of the bucketed statistics engine. Producers call {@link #submit}; everything else is only called from
+ * the single statistics-applier thread.
+ */
+public interface TransactionIngestor {
+
+    /**
+     * @param amount        the amount as a fixed-point value scaled by {@code decimal-scale}
+     * @param decimalAmount the amount itself when it is not kept as a fixed-point value, otherwise null
+     */
+    public void submit(long timestampMillis, long amount, BigDecimal decimalAmount);
+
+    public void submit(TransactionBatch batch);
+
+    /**
+     * Folds pending submissions into the buckets.
+     *
+     * @return the number of transactions applied
+     */
+    public int apply(int maxTransactions);
+
+    public boolean hasPending();
+
+    /**
+     * @return the number of submitted transactions not applied yet
+     */
+    public long backlog();
+
+    /**
+     * Expires the transactions not newer than {@code fromMillis} and merges the remaining ones into {@code result} and,
+     * when it is not null, {@code sketchResult}.
+     */
+    public void aggregateWindow(long fromMillis, StatisticsBucket result, QuantileSketch sketchResult);
+
+    /**
+     * Merges the transactions newer than {@code fromMillis} and not newer than {@code toMillis} into {@code result}
+     * and, when it is not null, {@code sketchResult}, without expiring anything.
+     */
+    public void aggregate(long fromMillis, long toMillis, StatisticsBucket result, QuantileSketch sketchResult);
+
+    /**
+     * Merges the buckets holding transactions newer than {@code fromMillis} into {@code result}, without expiring
+     * anything.
+     */
+    public void collect(long fromMillis, PartialAggregates result);
+
+    /**
+     * @return start of the oldest bucket still counted, or {@link Long#MIN_VALUE} when nothing is
+     */
+    public long oldestMillis();
+
+}
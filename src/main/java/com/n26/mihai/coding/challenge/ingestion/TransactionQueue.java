@@ -0,0 +1,109 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer/single-consumer ring of preallocated transaction slots. Producers claim a sequence, wait
+ * until the consumer has freed its slot and then publish it; the single consumer drains published slots in order.
+ */
+public class TransactionQueue {
+
+    private final int mask;
+
+    private final long[] timestamps;
+
+    private final long[] amounts;
+
+    private final BigDecimal[] decimalAmounts;
+
+    private final AtomicLongArray publishedSequences;
+
+    private final AtomicLong claimedSequence = new AtomicLong();
+
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+
+    public TransactionQueue(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(requestedCapacity, 2) - 1) << 1;
+        this.mask = capacity - 1;
+        this.timestamps = new long[capacity];
+        this.amounts = new long[capacity];
+        this.decimalAmounts = new BigDecimal[capacity];
+        this.publishedSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedSequences.set(i, -1);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public void put(long timestampMillis, long amount, BigDecimal decimalAmount) {
+        long sequence = claimedSequence.getAndIncrement();
+        while (sequence - capacity() > consumedSequence.get()) {
+            LockSupport.parkNanos(1000);
+        }
+        int slot = (int) (sequence & mask);
+        timestamps[slot] = timestampMillis;
+        amounts[slot] = amount;
+        decimalAmounts[slot] = decimalAmount;
+        publishedSequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * Claims one slot per transaction of the batch at once and publishes them all.
+     */
+    public void putAll(TransactionBatch batch) {
+        int size = batch.size();
+        if (size > capacity()) {
+            throw new IllegalArgumentException("Batch of " + size + " transactions does not fit a queue of " + capacity());
+        }
+        long firstSequence = claimedSequence.getAndAdd(size);
+        while (firstSequence + size - 1 - capacity() > consumedSequence.get()) {
+            LockSupport.parkNanos(1000);
+        }
+        for (int i = 0; i < size; i++) {
+            long sequence = firstSequence + i;
+            int slot = (int) (sequence & mask);
+            timestamps[slot] = batch.getTimestamp(i);
+            amounts[slot] = batch.getAmount(i);
+            decimalAmounts[slot] = batch.getDecimalAmount(i);
+            publishedSequences.lazySet(slot, sequence);
+        }
+    }
+
+    /**
+     * Hands up to {@code maxTransactions} published transactions to the handler. Must only be called by the consumer.
+     *
+     * @return the number of transactions drained
+     */
+    public int drain(TransactionHandler handler, int maxTransactions) {
+        long next = consumedSequence.get() + 1;
+        int drained = 0;
+        while (drained < maxTransactions) {
+            int slot = (int) (next & mask);
+            if (publishedSequences.get(slot) != next) {
+                break;
+            }
+            handler.onTransaction(timestamps[slot], amounts[slot], decimalAmounts[slot]);
+            decimalAmounts[slot] = null;
+            next++;
+            drained++;
+        }
+        if (drained > 0) {
+            consumedSequence.lazySet(next - 1);
+        }
+        return drained;
+    }
+
+    public long size() {
+        return claimedSequence.get() - consumedSequence.get() - 1;
+    }
+
+    public boolean isEmpty() {
+        return publishedSequences.get((int) ((consumedSequence.get() + 1) & mask)) != consumedSequence.get() + 1;
+    }
+}
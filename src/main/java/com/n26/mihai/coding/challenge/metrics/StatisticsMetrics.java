@@ -0,0 +1,100 @@
+package com.n26.mihai.coding.challenge.metrics;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and gauges of the statistics engine, cheap enough to update on every transaction: status counts are
+ * {@link LongAdder}s, and ingest-to-visible latency is sampled one transaction at a time. A producer stamps a submitted
+ * transaction only when no other stamp is pending; the applier records the stamp once it publishes a snapshot from an
+ * apply pass that started after it, which is the first snapshot guaranteed to contain that transaction.
+ */
+public class StatisticsMetrics {
+
+    private final LongAdder[] statusCounts = new LongAdder[TransactionStatus.values().length];
+
+    private final LongAdder untrackedKeyed = new LongAdder();
+
+    private final AtomicLong pendingSampleNanos = new AtomicLong();
+
+    private final LatencyHistogram visibleLatency = new LatencyHistogram();
+
+    private final LongSupplier backlog;
+
+    private volatile long oldestCountedMillis = Long.MIN_VALUE;
+
+    public StatisticsMetrics(LongSupplier backlog) {
+        this.backlog = backlog;
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new LongAdder();
+        }
+    }
+
+    public void count(TransactionStatus status) {
+        statusCounts[status.ordinal()].increment();
+    }
+
+    public void count(TransactionStatus status, long transactions) {
+        if (transactions > 0) {
+            statusCounts[status.ordinal()].add(transactions);
+        }
+    }
+
+    public long getCount(TransactionStatus status) {
+        return statusCounts[status.ordinal()].sum();
+    }
+
+    /**
+     * Called when a created transaction only counts towards the global statistics because its key could not take it.
+     */
+    public void countUntrackedKeyed() {
+        untrackedKeyed.increment();
+    }
+
+    public long getUntrackedKeyed() {
+        return untrackedKeyed.sum();
+    }
+
+    /**
+     * Called by producers once a transaction has been submitted.
+     */
+    public void sampleSubmitted() {
+        if (pendingSampleNanos.get() == 0) {
+            pendingSampleNanos.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    /**
+     * Called by the applier once it published a snapshot from the apply pass that started at {@code passStartNanos}.
+     *
+     * @return the ingest-to-visible latency recorded, or -1 when no sample was due
+     */
+    public long published(long passStartNanos, long oldestCountedMillis) {
+        this.oldestCountedMillis = oldestCountedMillis;
+        long sampleNanos = pendingSampleNanos.get();
+        if (sampleNanos != 0 && sampleNanos - passStartNanos < 0 && pendingSampleNanos.compareAndSet(sampleNanos, 0)) {
+            long latencyNanos = System.nanoTime() - sampleNanos;
+            visibleLatency.record(latencyNanos);
+            return latencyNanos;
+        }
+        return -1;
+    }
+
+    public LatencyHistogram getVisibleLatency() {
+        return visibleLatency;
+    }
+
+    public long getBacklog() {
+        return backlog.getAsLong();
+    }
+
+    /**
+     * @return start of the oldest bucket counted by the last snapshot, or {@link Long#MIN_VALUE} when it was empty
+     */
+    public long getOldestCountedMillis() {
+        return oldestCountedMillis;
+    }
+}
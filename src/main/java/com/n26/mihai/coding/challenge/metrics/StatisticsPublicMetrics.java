@@ -0,0 +1,68 @@
+package com.n26.mihai.coding.challenge.metrics;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.ingestion.AdmissionController;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.stream.StatisticsStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exports {@link StatisticsMetrics} through the actuator {@code /metrics} endpoint. Latencies are in microseconds,
+ * ages and lags in milliseconds. Eviction lag is how long ago the oldest bucket still counted should have left the
+ * window; it stays at 0 while expiry keeps up.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatisticsPublicMetrics implements PublicMetrics {
+
+    private final StatisticsMetrics statisticsMetrics;
+
+    private final AdmissionController admissionController;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final StatisticsStream statisticsStream;
+
+    private final Clock clock;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (TransactionStatus status : TransactionStatus.values()) {
+            metrics.add(new Metric<>("counter.statistics.transactions." + status.name().toLowerCase(Locale.ROOT), statisticsMetrics.getCount(status)));
+        }
+        LatencyHistogram visibleLatency = statisticsMetrics.getVisibleLatency();
+        metrics.add(new Metric<>("counter.statistics.ingest.visible.samples", visibleLatency.getCount()));
+        metrics.add(new Metric<>("gauge.statistics.ingest.visible.p50", visibleLatency.quantileMicros(0.5)));
+        metrics.add(new Metric<>("gauge.statistics.ingest.visible.p99", visibleLatency.quantileMicros(0.99)));
+        metrics.add(new Metric<>("gauge.statistics.ingest.visible.p999", visibleLatency.quantileMicros(0.999)));
+        metrics.add(new Metric<>("gauge.statistics.ingest.visible.max", visibleLatency.getMaxMicros()));
+        metrics.add(new Metric<>("gauge.statistics.ingest.backlog", statisticsMetrics.getBacklog()));
+        metrics.add(new Metric<>("counter.statistics.keys.untracked", statisticsMetrics.getUntrackedKeyed()));
+        metrics.add(new Metric<>("gauge.statistics.admission.in-flight", admissionController.getInFlight()));
+        metrics.add(new Metric<>("gauge.statistics.admission.limit", admissionController.getLimit()));
+        long oldestCountedMillis = statisticsMetrics.getOldestCountedMillis();
+        if (oldestCountedMillis != Long.MIN_VALUE) {
+            long currentMillis = clock.millis();
+            long expiresAtMillis = oldestCountedMillis + applicationProperties.getBucketMillis() + applicationProperties.getTransactionLifeMillis();
+            metrics.add(new Metric<>("gauge.statistics.window.oldest.age", currentMillis - oldestCountedMillis));
+            metrics.add(new Metric<>("gauge.statistics.eviction.lag", Math.max(0, currentMillis - expiresAtMillis)));
+        }
+        else {
+            metrics.add(new Metric<>("gauge.statistics.window.oldest.age", 0l));
+            metrics.add(new Metric<>("gauge.statistics.eviction.lag", 0l));
+        }
+        metrics.add(new Metric<>("gauge.statistics.stream.subscribers", statisticsStream.getSubscriberCount()));
+        metrics.add(new Metric<>("counter.statistics.stream.dropped", statisticsStream.getDroppedEvents()));
+        return metrics;
+    }
+}
@@ -4,8 +4,13 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Component
@@ -16,4 +21,147 @@ public class ApplicationProperties {
     private Long transactionLifeMillis;
 
     private Integer decimalScale = 3;
+
+    private String numericMode = "decimal";
+
+    @Min(1)
+    @NotNull
+    private Long bucketMillis = 10l;
+
+    private String ingestMode = "queued";
+
+    @Min(1)
+    @NotNull
+    private Integer ingestStripes = Runtime.getRuntime().availableProcessors();
+
+    @Min(2)
+    @NotNull
+    private Integer ingestQueueSize = 65536;
+
+    @Min(1)
+    @NotNull
+    private Integer ingestBatchSize = 1024;
+
+    @NotNull
+    private String admissionMode = "static";
+
+    @Min(0)
+    @NotNull
+    private Long admissionMaxInFlight = 65536l;
+
+    @Min(0)
+    @NotNull
+    private Long admissionMinInFlight = 1024l;
+
+    @Min(1)
+    @NotNull
+    private Long admissionTargetLatencyMillis = 50l;
+
+    @Min(400)
+    @Max(599)
+    @NotNull
+    private Integer admissionRejectStatus = 503;
+
+    @Min(0)
+    @NotNull
+    private Integer admissionRetryAfterSeconds = 1;
+
+    @Min(1)
+    @NotNull
+    private Long ingestFlushIntervalMillis = 10l;
+
+    @Min(1)
+    @NotNull
+    private Long transactionLogIntervalMillis = 60000l;
+
+    @Min(0)
+    @NotNull
+    private Long maxWindowMillis = 3600000l;
+
+    @Min(1)
+    @NotNull
+    private Integer windowLevelSlots = 64;
+
+    @Min(2)
+    @NotNull
+    private Integer windowLevelFactor = 4;
+
+    @Min(0)
+    @NotNull
+    private Integer maxKeys = 10000;
+
+    @Min(1)
+    @NotNull
+    private Long keyBucketMillis = 1000l;
+
+    @Min(1)
+    @NotNull
+    private Long keySweepIntervalMillis = 1000l;
+
+    @NotNull
+    private Boolean walEnabled = false;
+
+    @NotNull
+    private String walDirectory = "wal";
+
+    @Min(1)
+    @NotNull
+    private Long walSegmentMillis = 10000l;
+
+    @Min(4096)
+    @NotNull
+    private Integer walSegmentBytes = 16 * 1024 * 1024;
+
+    @NotNull
+    private String walFsync = "periodic";
+
+    @Min(1)
+    @NotNull
+    private Long walFsyncIntervalMillis = 1000l;
+
+    @NotNull
+    private List<String> peers = new ArrayList<>();
+
+    @Min(1)
+    @NotNull
+    private Integer peerTimeoutMillis = 1000;
+
+    @Min(0)
+    @NotNull
+    private Long clusterCacheMillis = 100l;
+
+    @Min(1)
+    @NotNull
+    private Long statisticsStreamIntervalMillis = 100l;
+
+    @Min(1)
+    @NotNull
+    private Long statisticsStreamHeartbeatMillis = 15000l;
+
+    @NotNull
+    private Boolean binaryListenerEnabled = false;
+
+    @Min(0)
+    @NotNull
+    private Integer binaryListenerPort = 9026;
+
+    @Min(1)
+    @NotNull
+    private Integer binaryMaxBatchFrames = 4096;
+
+    @Min(1)
+    @NotNull
+    private Integer binaryWorkerThreads = 2;
+
+    @NotNull
+    private Boolean percentilesEnabled = true;
+
+    @DecimalMin("0.0001")
+    @DecimalMax("0.5")
+    @NotNull
+    private Double percentileRelativeError = 0.01;
+
+    @Min(1)
+    @NotNull
+    private Long percentileBucketMillis = 1000l;
 }
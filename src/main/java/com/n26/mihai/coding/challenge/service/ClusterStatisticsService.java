@@ -0,0 +1,12 @@
+package com.n26.mihai.coding.challenge.service;
+
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+
+public interface ClusterStatisticsService {
+
+    /**
+     * @return the statistics of this node merged with those of every configured peer that answered in time
+     */
+    public StatisticsDTO getClusterStatistics();
+
+}
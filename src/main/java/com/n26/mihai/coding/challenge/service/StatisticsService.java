@@ -1,13 +1,63 @@
 package com.n26.mihai.coding.challenge.service;
 
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.dto.KeyedStatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.TransactionDTO;
 import com.n26.mihai.coding.challenge.enums.TransactionStatus;
 
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 public interface StatisticsService {
 
     public TransactionStatus createTransaction(TransactionDTO transactionDTO);
 
+    /**
+     * Creates a transaction decoded straight from a request, with {@code amount} unscaled at {@code decimal-scale}, or
+     * {@code decimalAmount} at that scale instead when it does not fit a long, and a null key when there is none.
+     */
+    public TransactionStatus createTransaction(long timestampMillis, long amount, BigDecimal decimalAmount, String key);
+
+    public Map<TransactionStatus, Long> createTransactions(Iterator<TransactionDTO> transactions);
+
+    /**
+     * Creates the first {@code size} transactions given as primitives, with amounts unscaled at {@code scale} and a
+     * null key when there is none.
+     *
+     * @param statusCounts filled with the number of transactions of each {@link TransactionStatus}, by ordinal
+     */
+    public void createTransactions(long[] timestamps, long[] unscaledAmounts, int scale, String[] keys, int size, long[] statusCounts);
+
     public StatisticsDTO getStatistics();
 
+    /**
+     * @return the last published snapshot, with its statistics already serialized to JSON
+     */
+    public StatisticsSnapshot getSnapshot();
+
+    /**
+     * @param windowMillis length of the window, at most {@code max-window-millis}
+     * @param percentiles  percentiles between 0 and 100, returned as keys of {@link StatisticsDTO#getPercentiles()},
+     *                     or null when none are needed
+     */
+    public StatisticsDTO getStatistics(long windowMillis, List<String> percentiles);
+
+    /**
+     * @return the per-bucket aggregates of the current window, for merging with those of other nodes
+     */
+    public PartialAggregates getPartialAggregates();
+
+    /**
+     * @return the statistics of the transactions with the given key, empty when the key is not tracked
+     */
+    public StatisticsDTO getStatistics(String key);
+
+    /**
+     * @return the statistics of the {@code limit} keys with the highest sum, highest first
+     */
+    public List<KeyedStatisticsDTO> getTopStatistics(int limit);
+
 }
@@ -0,0 +1,21 @@
+package com.n26.mihai.coding.challenge.service;
+
+import com.n26.mihai.coding.challenge.aggregation.QuantileSketch;
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Statistics of the window as published by the applier thread. Never modified once published.
+ * <p>
+ * Published snapshots also carry the statistics already serialized to JSON and an ETag that only changes when the
+ * statistics do; both are null for snapshots of arbitrary windows.
+ */
+@Getter
+@AllArgsConstructor
+public class StatisticsSnapshot {
+    private final StatisticsDTO statistics;
+    private final QuantileSketch sketch;
+    private final String etag;
+    private final byte[] json;
+}
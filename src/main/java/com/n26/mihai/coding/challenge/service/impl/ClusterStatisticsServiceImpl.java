@@ -0,0 +1,121 @@
+package com.n26.mihai.coding.challenge.service.impl;
+
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import com.n26.mihai.coding.challenge.codec.PartialAggregatesCodec;
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.ClusterStatisticsService;
+import com.n26.mihai.coding.challenge.service.StatisticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator of distributed mode: asks every peer in {@code peers} for its {@link PartialAggregates} in parallel,
+ * merges them with this node's own by bucket and aggregates the window on this node's clock. The merged statistics
+ * are reused for {@code cluster-cache-millis}. Peers that fail or do not answer within {@code peer-timeout-millis} are
+ * left out.
+ */
+@Service
+@Slf4j
+public class ClusterStatisticsServiceImpl implements ClusterStatisticsService {
+
+    private static final String PARTIALS_PATH = "/statistics/partials";
+
+    private final ApplicationProperties applicationProperties;
+
+    private final StatisticsService statisticsService;
+
+    private final Clock clock;
+
+    private final RestTemplate restTemplate;
+
+    private final ExecutorService peerExecutor;
+
+    private volatile CachedStatistics cachedStatistics;
+
+    public ClusterStatisticsServiceImpl(ApplicationProperties applicationProperties, StatisticsService statisticsService, Clock clock) {
+        this.applicationProperties = applicationProperties;
+        this.statisticsService = statisticsService;
+        this.clock = clock;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(applicationProperties.getPeerTimeoutMillis());
+        requestFactory.setReadTimeout(applicationProperties.getPeerTimeoutMillis());
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.peerExecutor = Executors.newFixedThreadPool(Math.max(1, applicationProperties.getPeers().size()), runnable -> {
+            Thread thread = new Thread(runnable, "statistics-peer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        peerExecutor.shutdownNow();
+    }
+
+    @Override
+    public StatisticsDTO getClusterStatistics() {
+        CachedStatistics cached = this.cachedStatistics;
+        if (cached != null && System.nanoTime() - cached.createdNanos < TimeUnit.MILLISECONDS.toNanos(applicationProperties.getClusterCacheMillis())) {
+            return cached.statistics;
+        }
+        synchronized (this) {
+            cached = this.cachedStatistics;
+            if (cached != null && System.nanoTime() - cached.createdNanos < TimeUnit.MILLISECONDS.toNanos(applicationProperties.getClusterCacheMillis())) {
+                return cached.statistics;
+            }
+            StatisticsDTO statistics = mergeCluster();
+            this.cachedStatistics = new CachedStatistics(statistics, System.nanoTime());
+            return statistics;
+        }
+    }
+
+    private StatisticsDTO mergeCluster() {
+        int scale = applicationProperties.getDecimalScale();
+        List<CompletableFuture<PartialAggregates>> peerPartials = new ArrayList<>();
+        for (String peer : applicationProperties.getPeers()) {
+            peerPartials.add(CompletableFuture.supplyAsync(() -> fetch(peer, scale), peerExecutor));
+        }
+        PartialAggregates merged = statisticsService.getPartialAggregates();
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(applicationProperties.getPeerTimeoutMillis());
+        for (int i = 0; i < peerPartials.size(); i++) {
+            try {
+                merged.merge(peerPartials.get(i).get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (Exception e) {
+                log.warn("Leaving out peer {}: {}", applicationProperties.getPeers().get(i), e.toString());
+            }
+        }
+        StatisticsBucket window = new StatisticsBucket(0);
+        merged.aggregate(clock.millis() - applicationProperties.getTransactionLifeMillis(), window);
+        return StatisticsServiceImpl.toStatistics(window, scale);
+    }
+
+    private PartialAggregates fetch(String peer, int scale) {
+        byte[] encoded = restTemplate.getForObject(peer + PARTIALS_PATH, byte[].class);
+        return PartialAggregatesCodec.decode(encoded, scale);
+    }
+
+    private static class CachedStatistics {
+
+        private final StatisticsDTO statistics;
+
+        private final long createdNanos;
+
+        private CachedStatistics(StatisticsDTO statistics, long createdNanos) {
+            this.statistics = statistics;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -1,130 +1,596 @@
 package com.n26.mihai.coding.challenge.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n26.mihai.coding.challenge.aggregation.KeyedWindowAggregator;
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.QuantileSketch;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import com.n26.mihai.coding.challenge.dto.KeyedStatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.TransactionDTO;
 import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.ingestion.AdmissionController;
+import com.n26.mihai.coding.challenge.ingestion.QueuedTransactionIngestor;
+import com.n26.mihai.coding.challenge.ingestion.StripedTransactionIngestor;
+import com.n26.mihai.coding.challenge.ingestion.TransactionBatch;
+import com.n26.mihai.coding.challenge.ingestion.TransactionIngestor;
+import com.n26.mihai.coding.challenge.metrics.StatisticsMetrics;
 import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
 import com.n26.mihai.coding.challenge.service.StatisticsService;
-import lombok.RequiredArgsConstructor;
+import com.n26.mihai.coding.challenge.service.StatisticsSnapshot;
+import com.n26.mihai.coding.challenge.wal.WriteAheadLog;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
-@RequiredArgsConstructor
 @Service
 @Slf4j
-public class StatisticsServiceImpl implements StatisticsService{
+public class StatisticsServiceImpl implements StatisticsService {
 
     private final ApplicationProperties applicationProperties;
 
-    private final Map<Long, TransactionDTO> transactionMap = new ConcurrentHashMap<>();
+    private static final int MAX_FIXED_POINT_PRECISION = 18;
 
-    private final SortedSet<BigDecimal> transactionValues = new TreeSet<>();
+    private final TransactionIngestor transactionIngestor;
 
-    private final Map<BigDecimal, Integer> duplicateValuesCount = new HashMap<>();
+    private final KeyedWindowAggregator keyedWindowAggregator;
 
-    private final StatisticsDTO statisticsDTO = new StatisticsDTO(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.valueOf(Double.MIN_VALUE), BigDecimal.valueOf(Double.MAX_VALUE), 0l);
+    private final StatisticsMetrics statisticsMetrics;
 
-    private StatisticsDTO statisticsCopy = new StatisticsDTO(BigDecimal.ZERO, BigDecimal.ZERO, null, null, 0l);
+    private final AdmissionController admissionController;
 
-    private final AtomicLong transactionIdCount = new AtomicLong();
+    private final boolean fixedPoint;
 
-    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private volatile WriteAheadLog writeAheadLog;
+
+    private final Thread applierThread;
+
+    private volatile boolean running;
+
+    private volatile boolean applierWaiting;
+
+    private final Queue<Runnable> applierTasks = new ConcurrentLinkedQueue<>();
+
+    private final ObjectMapper objectMapper;
+
+    private final Clock clock;
+
+    private final String etagPrefix = Long.toHexString(System.currentTimeMillis()) + "-";
+
+    private long snapshotVersion;
+
+    private volatile StatisticsSnapshot statisticsSnapshot;
+
+    public StatisticsServiceImpl(ApplicationProperties applicationProperties) {
+        this(applicationProperties, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock source of the current time, which decides what is too old or in the future and what has expired
+     */
+    public StatisticsServiceImpl(ApplicationProperties applicationProperties, Clock clock) {
+        this(applicationProperties, new ObjectMapper(), clock);
+    }
+
+    @Autowired
+    public StatisticsServiceImpl(ApplicationProperties applicationProperties, ObjectMapper objectMapper, Clock clock) {
+        this.applicationProperties = applicationProperties;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.statisticsSnapshot = snapshotOf(new StatisticsDTO(BigDecimal.ZERO, BigDecimal.ZERO, null, null, 0l, null), null);
+        this.transactionIngestor = "striped".equals(applicationProperties.getIngestMode())
+                ? new StripedTransactionIngestor(applicationProperties)
+                : new QueuedTransactionIngestor(applicationProperties);
+        this.keyedWindowAggregator = new KeyedWindowAggregator(applicationProperties);
+        this.statisticsMetrics = new StatisticsMetrics(() -> transactionIngestor.backlog() + applierTasks.size());
+        this.admissionController = new AdmissionController(applicationProperties, transactionIngestor::backlog);
+        this.fixedPoint = "fixed-point".equals(applicationProperties.getNumericMode());
+        this.applierThread = new Thread(this::applyTransactions, "statistics-applier");
+        this.applierThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        running = true;
+        applierThread.start();
+        if (applicationProperties.getWalEnabled()) {
+            WriteAheadLog writeAheadLog = new WriteAheadLog(Paths.get(applicationProperties.getWalDirectory()),
+                    applicationProperties.getWalSegmentMillis(), applicationProperties.getWalSegmentBytes(),
+                    WriteAheadLog.FsyncPolicy.valueOf(applicationProperties.getWalFsync().toUpperCase(Locale.ROOT)),
+                    applicationProperties::getTransactionLifeMillis, clock);
+            long currentMillis = clock.millis();
+            long replayed = writeAheadLog.replay(currentMillis - applicationProperties.getTransactionLifeMillis(), (timestampMillis, amount, key) -> {
+                if (timestampMillis <= currentMillis) {
+                    submit(timestampMillis, amount.setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN), key);
+                }
+            });
+            log.info("Replayed {} transactions from the write-ahead log.", replayed);
+            this.writeAheadLog = writeAheadLog;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(applierThread);
+        applierThread.join();
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+        runApplierTasks();
+    }
 
     @Override
     public TransactionStatus createTransaction(TransactionDTO transactionDTO) {
-        Date currentDate = new Date();
-        Date lastMinute = new Date();
-        lastMinute.setTime(currentDate.getTime() - applicationProperties.getTransactionLifeMillis());
-        if(transactionDTO.getTimestamp().after(currentDate)) {
-            return TransactionStatus.FUTURE;
+        TransactionStatus status = admit(validate(transactionDTO));
+        statisticsMetrics.count(status);
+        if (status != TransactionStatus.CREATED) {
+            return status;
         }
-        if(transactionDTO.getTimestamp().before(lastMinute)) {
-            return TransactionStatus.OLD;
+        try {
+            BigDecimal amount = transactionDTO.getAmount().setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN);
+            if (writeAheadLog != null) {
+                writeAheadLog.append(transactionDTO.getTimestamp().getTime(), amount, transactionDTO.getKey());
+                writeAheadLog.endBatch();
+            }
+            submit(transactionDTO.getTimestamp().getTime(), amount, transactionDTO.getKey());
+        } finally {
+            admissionController.release(1);
         }
-        transactionDTO.setAmount(transactionDTO.getAmount().setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
-        Runnable updateStatisticsAndCacheRunnable = () -> {
-            Long transactionId = this.transactionIdCount.incrementAndGet();
-            scheduleTaskRemoval(transactionId, transactionDTO.getTimestamp().getTime()-lastMinute.getTime());
-            updateStatisticsAndCacheNewTransaction(transactionId, transactionDTO);
-        };
-        Thread updateStatisticsAndCacheThread = new Thread(updateStatisticsAndCacheRunnable);
-        updateStatisticsAndCacheThread.start();
         return TransactionStatus.CREATED;
     }
 
+    @Override
+    public TransactionStatus createTransaction(long timestampMillis, long amount, BigDecimal decimalAmount, String key) {
+        TransactionStatus status = admit(validate(timestampMillis, key));
+        statisticsMetrics.count(status);
+        if (status != TransactionStatus.CREATED) {
+            return status;
+        }
+        try {
+            if (writeAheadLog != null) {
+                if (decimalAmount == null) {
+                    writeAheadLog.append(timestampMillis, amount, applicationProperties.getDecimalScale(), key);
+                }
+                else {
+                    writeAheadLog.append(timestampMillis, decimalAmount, key);
+                }
+                writeAheadLog.endBatch();
+            }
+            if (decimalAmount != null) {
+                submit(timestampMillis, decimalAmount, key);
+            }
+            else if (fixedPoint) {
+                submit(timestampMillis, amount, null, key);
+            }
+            else {
+                submit(timestampMillis, 0, BigDecimal.valueOf(amount, applicationProperties.getDecimalScale()), key);
+            }
+        } finally {
+            admissionController.release(1);
+        }
+        return TransactionStatus.CREATED;
+    }
+
+    @Override
+    public Map<TransactionStatus, Long> createTransactions(Iterator<TransactionDTO> transactions) {
+        long[] statusCounts = new long[TransactionStatus.values().length];
+        TransactionBatch batch = new TransactionBatch(Math.min(applicationProperties.getIngestBatchSize(), applicationProperties.getIngestQueueSize()));
+        try {
+            while (transactions.hasNext()) {
+                TransactionDTO transactionDTO = transactions.next();
+                TransactionStatus status = admit(validate(transactionDTO));
+                statusCounts[status.ordinal()]++;
+                if (status != TransactionStatus.CREATED) {
+                    continue;
+                }
+                BigDecimal amount = transactionDTO.getAmount().setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN);
+                logAdmitted(transactionDTO.getTimestamp().getTime(), amount, transactionDTO.getKey());
+                add(batch, transactionDTO.getTimestamp().getTime(), amount, transactionDTO.getKey());
+            }
+            endBatch(batch);
+        } finally {
+            admissionController.release(batch.size());
+        }
+        Map<TransactionStatus, Long> counts = new EnumMap<>(TransactionStatus.class);
+        for (TransactionStatus status : TransactionStatus.values()) {
+            counts.put(status, statusCounts[status.ordinal()]);
+            statisticsMetrics.count(status, statusCounts[status.ordinal()]);
+        }
+        return counts;
+    }
+
+    /**
+     * Amounts already at {@code decimal-scale} are added as they are, so in {@code fixed-point} numeric mode no object
+     * is created per transaction.
+     */
+    @Override
+    public void createTransactions(long[] timestamps, long[] unscaledAmounts, int scale, String[] keys, int size, long[] statusCounts) {
+        Arrays.fill(statusCounts, 0);
+        int decimalScale = applicationProperties.getDecimalScale();
+        TransactionBatch batch = new TransactionBatch(Math.max(1, Math.min(size, Math.min(applicationProperties.getIngestBatchSize(), applicationProperties.getIngestQueueSize()))));
+        try {
+            for (int i = 0; i < size; i++) {
+                TransactionStatus status = admit(validate(timestamps[i], keys[i]));
+                statusCounts[status.ordinal()]++;
+                if (status != TransactionStatus.CREATED) {
+                    continue;
+                }
+                if (scale == decimalScale) {
+                    logAdmitted(timestamps[i], unscaledAmounts[i], scale, keys[i]);
+                    add(batch, timestamps[i], unscaledAmounts[i], keys[i]);
+                }
+                else {
+                    BigDecimal amount = BigDecimal.valueOf(unscaledAmounts[i], scale).setScale(decimalScale, BigDecimal.ROUND_HALF_EVEN);
+                    logAdmitted(timestamps[i], amount, keys[i]);
+                    add(batch, timestamps[i], amount, keys[i]);
+                }
+            }
+            endBatch(batch);
+        } finally {
+            admissionController.release(batch.size());
+        }
+        for (TransactionStatus status : TransactionStatus.values()) {
+            statisticsMetrics.count(status, statusCounts[status.ordinal()]);
+        }
+    }
+
     @Override
     public StatisticsDTO getStatistics() {
-        return statisticsCopy;
+        return statisticsSnapshot.getStatistics();
     }
 
-    private void scheduleTaskRemoval(Long transactionId, Long millis) {
-        Runnable updateStatisticsAndCacheOldTransRunnable = () -> {
-            updateStatisticsAndCacheOldTransaction(transactionId);
-        };
-        executorService.schedule(updateStatisticsAndCacheOldTransRunnable, millis, TimeUnit.MILLISECONDS);
-    };
+    @Override
+    public StatisticsSnapshot getSnapshot() {
+        return statisticsSnapshot;
+    }
 
-    private void updateStatisticsAndCacheNewTransaction(Long transactionId, TransactionDTO transactionDTO) {
-        this.transactionMap.put(transactionId, transactionDTO);
-        synchronized (statisticsDTO) {
-            Integer duplicateValueCount = this.duplicateValuesCount.get(transactionDTO.getAmount());
-            if (duplicateValueCount == null) {
-                this.transactionValues.add(transactionDTO.getAmount());
-                this.duplicateValuesCount.put(transactionDTO.getAmount(), 1);
+    @Override
+    public StatisticsDTO getStatistics(long windowMillis, List<String> percentiles) {
+        StatisticsSnapshot snapshot = this.statisticsSnapshot;
+        if (windowMillis != applicationProperties.getTransactionLifeMillis()) {
+            boolean withSketch = percentiles != null && applicationProperties.getPercentilesEnabled();
+            snapshot = callOnApplier(() -> aggregate(windowMillis, withSketch));
+        }
+        if (percentiles == null || snapshot.getSketch() == null) {
+            return snapshot.getStatistics();
+        }
+        StatisticsDTO statistics = snapshot.getStatistics();
+        Map<String, BigDecimal> estimates = new LinkedHashMap<>();
+        if (statistics.getCount() > 0) {
+            for (String percentile : percentiles) {
+                BigDecimal estimate = BigDecimal.valueOf(snapshot.getSketch().quantile(Double.parseDouble(percentile) / 100))
+                        .setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN);
+                estimates.put(percentile, estimate.max(statistics.getMin()).min(statistics.getMax()));
             }
-            else {
-                this.duplicateValuesCount.replace(transactionDTO.getAmount(), duplicateValueCount+1);
-            }
-            Long newCount = this.statisticsDTO.getCount() + 1;
-            BigDecimal newSum = this.statisticsDTO.getSum().add(transactionDTO.getAmount());
-            this.statisticsDTO.setCount(newCount);
-            this.statisticsDTO.setAvg(newSum.divide(BigDecimal.valueOf(newCount), applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
-            this.statisticsDTO.setSum(newSum);
-            this.statisticsDTO.setMin(this.transactionValues.first());
-            this.statisticsDTO.setMax(this.transactionValues.last());
-            this.statisticsCopy = new StatisticsDTO(this.statisticsDTO.getSum(), this.statisticsDTO.getAvg(), this.statisticsDTO.getMax(), this.statisticsDTO.getMin(),this.statisticsDTO.getCount());
-            this.transactionValues.add(transactionDTO.getAmount());
-            log.info("Transaction with date {} and amount {} succesfully processed.", transactionDTO.getTimestamp(), transactionDTO.getAmount());
-        }
-    }
-
-    private void updateStatisticsAndCacheOldTransaction(Long transactionId) {
-        TransactionDTO transactionDTO = this.transactionMap.remove(transactionId);
-        synchronized (statisticsDTO) {
-            Long newCount = this.statisticsDTO.getCount() - 1;
-            BigDecimal newSum = this.statisticsDTO.getSum().subtract(transactionDTO.getAmount());
-            Integer duplicateValueCount = this.duplicateValuesCount.get(transactionDTO.getAmount());
-            if(duplicateValueCount>1){
-                this.duplicateValuesCount.replace(transactionDTO.getAmount(), duplicateValueCount-1);
+        }
+        return new StatisticsDTO(statistics.getSum(), statistics.getAvg(), statistics.getMax(), statistics.getMin(), statistics.getCount(), estimates);
+    }
+
+    public StatisticsMetrics getMetrics() {
+        return statisticsMetrics;
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    @Override
+    public PartialAggregates getPartialAggregates() {
+        return callOnApplier(() -> {
+            PartialAggregates partialAggregates = new PartialAggregates(applicationProperties.getBucketMillis());
+            transactionIngestor.collect(clock.millis() - applicationProperties.getTransactionLifeMillis(), partialAggregates);
+            return partialAggregates;
+        });
+    }
+
+    @Override
+    public StatisticsDTO getStatistics(String key) {
+        StatisticsBucket window = new StatisticsBucket(0);
+        keyedWindowAggregator.aggregateWindow(key, clock.millis() - applicationProperties.getTransactionLifeMillis(), window);
+        return toStatistics(window);
+    }
+
+    @Override
+    public List<KeyedStatisticsDTO> getTopStatistics(int limit) {
+        Map<String, StatisticsBucket> top = keyedWindowAggregator.top(limit, clock.millis() - applicationProperties.getTransactionLifeMillis());
+        List<KeyedStatisticsDTO> statistics = new ArrayList<>(top.size());
+        for (Map.Entry<String, StatisticsBucket> entry : top.entrySet()) {
+            statistics.add(new KeyedStatisticsDTO(entry.getKey(), toStatistics(entry.getValue())));
+        }
+        return statistics;
+    }
+
+    private TransactionStatus validate(TransactionDTO transactionDTO) {
+        if (transactionDTO.getAmount() == null || transactionDTO.getTimestamp() == null) {
+            return TransactionStatus.INVALID;
+        }
+        return validate(transactionDTO.getTimestamp().getTime(), transactionDTO.getKey());
+    }
+
+    private TransactionStatus validate(long transactionMillis, String key) {
+        if (key != null && key.length() > TransactionDTO.KEY_MAX_LENGTH) {
+            return TransactionStatus.INVALID;
+        }
+        long currentMillis = clock.millis();
+        if (transactionMillis > currentMillis) {
+            return TransactionStatus.FUTURE;
+        }
+        if (transactionMillis < currentMillis - applicationProperties.getTransactionLifeMillis()) {
+            return TransactionStatus.OLD;
+        }
+        return TransactionStatus.CREATED;
+    }
+
+    /**
+     * @return {@code status}, or {@link TransactionStatus#SHED} when a valid transaction is not admitted
+     */
+    private TransactionStatus admit(TransactionStatus status) {
+        return status == TransactionStatus.CREATED && !admissionController.tryAcquire() ? TransactionStatus.SHED : status;
+    }
+
+    /**
+     * Logs an admitted transaction that is about to be added to a batch, giving its permit back if that fails.
+     */
+    private void logAdmitted(long timestampMillis, BigDecimal amount, String key) {
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.append(timestampMillis, amount, key);
+            } catch (RuntimeException e) {
+                admissionController.release(1);
+                throw e;
             }
-            else {
-                this.duplicateValuesCount.remove(transactionDTO.getAmount());
-                this.transactionValues.remove(transactionDTO.getAmount());
+        }
+    }
+
+    private void logAdmitted(long timestampMillis, long unscaledAmount, int scale, String key) {
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.append(timestampMillis, unscaledAmount, scale, key);
+            } catch (RuntimeException e) {
+                admissionController.release(1);
+                throw e;
+            }
+        }
+    }
+
+    private void add(TransactionBatch batch, long timestampMillis, BigDecimal amount, String key) {
+        if (fixedPoint && amount.precision() <= MAX_FIXED_POINT_PRECISION) {
+            add(batch, timestampMillis, amount.unscaledValue().longValue(), null, key);
+        }
+        else {
+            add(batch, timestampMillis, 0, amount, key);
+        }
+    }
+
+    /**
+     * Adds an amount unscaled at {@code decimal-scale}, as a decimal in {@code decimal} numeric mode.
+     */
+    private void add(TransactionBatch batch, long timestampMillis, long amount, String key) {
+        if (fixedPoint) {
+            add(batch, timestampMillis, amount, null, key);
+        }
+        else {
+            add(batch, timestampMillis, 0, BigDecimal.valueOf(amount, applicationProperties.getDecimalScale()), key);
+        }
+    }
+
+    private void add(TransactionBatch batch, long timestampMillis, long amount, BigDecimal decimalAmount, String key) {
+        batch.add(timestampMillis, amount, decimalAmount);
+        if (key != null) {
+            addKeyed(key, timestampMillis, amount, decimalAmount);
+        }
+        if (batch.isFull()) {
+            submit(batch);
+        }
+    }
+
+    private void endBatch(TransactionBatch batch) {
+        if (batch.size() > 0) {
+            submit(batch);
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.endBatch();
+        }
+    }
+
+    private void submit(TransactionBatch batch) {
+        transactionIngestor.submit(batch);
+        admissionController.release(batch.size());
+        batch.clear();
+        statisticsMetrics.sampleSubmitted();
+        wakeApplier();
+    }
+
+    private void submit(long timestampMillis, BigDecimal amount, String key) {
+        if (fixedPoint && amount.precision() <= MAX_FIXED_POINT_PRECISION) {
+            submit(timestampMillis, amount.unscaledValue().longValue(), null, key);
+        }
+        else {
+            submit(timestampMillis, 0, amount, key);
+        }
+    }
+
+    private void submit(long timestampMillis, long amount, BigDecimal decimalAmount, String key) {
+        transactionIngestor.submit(timestampMillis, amount, decimalAmount);
+        statisticsMetrics.sampleSubmitted();
+        wakeApplier();
+        if (key != null) {
+            addKeyed(key, timestampMillis, amount, decimalAmount);
+        }
+    }
+
+    private void addKeyed(String key, long timestampMillis, long amount, BigDecimal decimalAmount) {
+        if (!keyedWindowAggregator.add(key, timestampMillis, amount, decimalAmount)) {
+            statisticsMetrics.countUntrackedKeyed();
+        }
+    }
+
+    private void wakeApplier() {
+        if (applierWaiting && transactionIngestor.hasPending()) {
+            LockSupport.unpark(applierThread);
+        }
+    }
+
+    private void applyTransactions() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(applicationProperties.getIngestFlushIntervalMillis());
+        long sweepIntervalNanos = TimeUnit.MILLISECONDS.toNanos(applicationProperties.getKeySweepIntervalMillis());
+        long lastPublishNanos = System.nanoTime();
+        long lastSweepNanos = lastPublishNanos;
+        long fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(applicationProperties.getWalFsyncIntervalMillis());
+        long lastFsyncNanos = lastPublishNanos;
+        long logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(applicationProperties.getTransactionLogIntervalMillis());
+        long lastLogNanos = lastPublishNanos;
+        long[] loggedCounts = new long[TransactionStatus.values().length];
+        while (running) {
+            long passStartNanos = System.nanoTime();
+            int applied = transactionIngestor.apply(applicationProperties.getIngestBatchSize());
+            if (applied > 0 || System.nanoTime() - lastPublishNanos >= flushIntervalNanos) {
+                publishStatistics(passStartNanos);
+                lastPublishNanos = System.nanoTime();
             }
-            this.statisticsDTO.setCount(newCount);
-            if(newCount>0) {
-                this.statisticsDTO.setSum(newSum);
-                this.statisticsDTO.setAvg(newSum.divide(BigDecimal.valueOf(newCount), applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
-                this.statisticsDTO.setMin(this.transactionValues.first());
-                this.statisticsDTO.setMax(this.transactionValues.last());
+            runApplierTasks();
+            if (System.nanoTime() - lastSweepNanos >= sweepIntervalNanos) {
+                keyedWindowAggregator.evictIdle(clock.millis() - applicationProperties.getTransactionLifeMillis());
+                lastSweepNanos = System.nanoTime();
             }
-            else {
-                this.statisticsDTO.setSum(BigDecimal.ZERO);
-                this.statisticsDTO.setAvg(BigDecimal.ZERO);
-                this.statisticsDTO.setMax(null);
-                this.statisticsDTO.setMin(null);
+            WriteAheadLog writeAheadLog = this.writeAheadLog;
+            if (writeAheadLog != null && writeAheadLog.getFsyncPolicy() == WriteAheadLog.FsyncPolicy.PERIODIC
+                    && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos) {
+                writeAheadLog.sync();
+                lastFsyncNanos = System.nanoTime();
+            }
+            if (System.nanoTime() - lastLogNanos >= logIntervalNanos) {
+                logTransactionCounts(loggedCounts);
+                lastLogNanos = System.nanoTime();
+            }
+            if (applied == 0) {
+                applierWaiting = true;
+                if (!transactionIngestor.hasPending() && applierTasks.isEmpty() && running) {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                }
+                applierWaiting = false;
+            }
+        }
+    }
+
+    /**
+     * Logs how many transactions of each status arrived since the previous call, when any did, in place of a line per
+     * request.
+     */
+    private void logTransactionCounts(long[] loggedCounts) {
+        StringBuilder counts = new StringBuilder();
+        boolean arrived = false;
+        for (TransactionStatus status : TransactionStatus.values()) {
+            long count = statisticsMetrics.getCount(status);
+            long arrivals = count - loggedCounts[status.ordinal()];
+            loggedCounts[status.ordinal()] = count;
+            arrived |= arrivals > 0;
+            counts.append(counts.length() == 0 ? "" : ", ").append(status).append('=').append(arrivals);
+        }
+        if (arrived) {
+            log.info("Transactions in the last {} ms: {}", applicationProperties.getTransactionLogIntervalMillis(), counts);
+        }
+    }
+
+    private void publishStatistics(long passStartNanos) {
+        long currentMillis = clock.millis();
+        StatisticsBucket window = new StatisticsBucket(0);
+        QuantileSketch sketch = applicationProperties.getPercentilesEnabled() ? new QuantileSketch(applicationProperties.getPercentileRelativeError()) : null;
+        transactionIngestor.aggregateWindow(currentMillis - applicationProperties.getTransactionLifeMillis(), window, sketch);
+        this.statisticsSnapshot = snapshotOf(toStatistics(window), sketch);
+        long latencyNanos = statisticsMetrics.published(passStartNanos, transactionIngestor.oldestMillis());
+        if (latencyNanos >= 0) {
+            admissionController.onVisibleLatency(latencyNanos);
+        }
+    }
+
+    /**
+     * Serializes the statistics once per change, so that polling the published statistics costs no serialization.
+     */
+    private StatisticsSnapshot snapshotOf(StatisticsDTO statistics, QuantileSketch sketch) {
+        StatisticsSnapshot previous = this.statisticsSnapshot;
+        if (previous != null && previous.getStatistics().equals(statistics)) {
+            return new StatisticsSnapshot(previous.getStatistics(), sketch, previous.getEtag(), previous.getJson());
+        }
+        try {
+            return new StatisticsSnapshot(statistics, sketch, "\"" + etagPrefix + (++snapshotVersion) + "\"", objectMapper.writeValueAsBytes(statistics));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private StatisticsSnapshot aggregate(long windowMillis, boolean withSketch) {
+        long currentMillis = clock.millis();
+        StatisticsBucket window = new StatisticsBucket(0);
+        QuantileSketch sketch = withSketch ? new QuantileSketch(applicationProperties.getPercentileRelativeError()) : null;
+        transactionIngestor.aggregate(currentMillis - windowMillis, currentMillis, window, sketch);
+        return new StatisticsSnapshot(toStatistics(window), sketch, null, null);
+    }
+
+    /**
+     * Runs {@code task} on the applier thread, which owns the aggregators, and waits for its result. A task offered
+     * while the service stops is either run by the final drain in {@link #stop()} or taken back and refused here.
+     */
+    private <T> T callOnApplier(Supplier<T> task) {
+        if (!running) {
+            throw new IllegalStateException("Statistics service is not running");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable call = () -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
             }
-            this.statisticsCopy = new StatisticsDTO(this.statisticsDTO.getSum(), this.statisticsDTO.getAvg(), this.statisticsDTO.getMax(), this.statisticsDTO.getMin(), this.statisticsDTO.getCount());
-            log.info("Transaction with date {} and amount {} succesfully removed from statistics because of old age.", transactionDTO.getTimestamp(), transactionDTO.getAmount());
+        };
+        applierTasks.offer(call);
+        if (!running && applierTasks.remove(call)) {
+            throw new IllegalStateException("Statistics service is not running");
+        }
+        LockSupport.unpark(applierThread);
+        return result.join();
+    }
+
+    private void runApplierTasks() {
+        for (Runnable task = applierTasks.poll(); task != null; task = applierTasks.poll()) {
+            task.run();
         }
     }
 
+    private StatisticsDTO toStatistics(StatisticsBucket window) {
+        return toStatistics(window, applicationProperties.getDecimalScale());
+    }
+
+    static StatisticsDTO toStatistics(StatisticsBucket window, int scale) {
+        if (window.getCount() == 0) {
+            return new StatisticsDTO(BigDecimal.ZERO, BigDecimal.ZERO, null, null, 0l, null);
+        }
+        BigDecimal sum = window.sum(scale);
+        BigDecimal avg = sum.divide(BigDecimal.valueOf(window.getCount()), scale, BigDecimal.ROUND_HALF_EVEN);
+        return new StatisticsDTO(sum, avg, window.max(scale), window.min(scale), window.getCount(), null);
+    }
 }
@@ -0,0 +1,240 @@
+package com.n26.mihai.coding.challenge.stream;
+
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.StatisticsService;
+import com.n26.mihai.coding.challenge.service.StatisticsSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-sent events of the published statistics. One fan-out thread wakes up every
+ * {@code statistics-stream-interval-millis} and, when the snapshot's ETag changed, encodes a single event that it
+ * hands to every subscriber, so the cost follows the tick rate and not the ingest rate.
+ * <p>
+ * Responses use non-blocking servlet output, written only from a subscriber's {@link WriteListener}: the fan-out thread
+ * just replaces the subscriber's pending event and, when the subscriber was idle, has the container run the write.
+ * A subscriber whose connection cannot take more data keeps only the latest event until
+ * {@link WriteListener#onWritePossible()}, so slow consumers drop intermediate events instead of buffering them.
+ * A comment line is sent every {@code statistics-stream-heartbeat-millis} to notice closed connections.
+ */
+@Component
+@Slf4j
+public class StatisticsStream {
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final StatisticsService statisticsService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder droppedEvents = new LongAdder();
+
+    private ScheduledExecutorService fanOutExecutor;
+
+    private String eventEtag;
+
+    private byte[] event;
+
+    private long lastHeartbeatNanos = System.nanoTime();
+
+    public StatisticsStream(StatisticsService statisticsService, ApplicationProperties applicationProperties) {
+        this.statisticsService = statisticsService;
+        this.applicationProperties = applicationProperties;
+    }
+
+    @PostConstruct
+    public void start() {
+        fanOutExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = applicationProperties.getStatisticsStreamIntervalMillis();
+        fanOutExecutor.scheduleAtFixedRate(this::fanOut, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        fanOutExecutor.shutdown();
+        fanOutExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * Takes over an asynchronous {@code text/event-stream} response until the client goes away.
+     */
+    public void subscribe(AsyncContext asyncContext) throws IOException {
+        Subscriber subscriber = new Subscriber(asyncContext, asyncContext.getResponse().getOutputStream());
+        asyncContext.addListener(subscriber);
+        subscriber.output.setWriteListener(subscriber);
+        subscribers.add(subscriber);
+    }
+
+    private void fanOut() {
+        try {
+            StatisticsSnapshot snapshot = statisticsService.getSnapshot();
+            if (!snapshot.getEtag().equals(eventEtag)) {
+                event = encode(snapshot);
+                eventEtag = snapshot.getEtag();
+            }
+            boolean heartbeat = System.nanoTime() - lastHeartbeatNanos >= TimeUnit.MILLISECONDS.toNanos(applicationProperties.getStatisticsStreamHeartbeatMillis());
+            if (heartbeat) {
+                lastHeartbeatNanos = System.nanoTime();
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (!eventEtag.equals(subscriber.offeredEtag)) {
+                    subscriber.offeredEtag = eventEtag;
+                    subscriber.offer(event);
+                }
+                else if (heartbeat) {
+                    subscriber.offer(HEARTBEAT);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Statistics stream fan-out failed", e);
+        }
+    }
+
+    private static byte[] encode(StatisticsSnapshot snapshot) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(snapshot.getJson().length + 64);
+        byte[] id = ("id: " + snapshot.getEtag().replace("\"", "") + "\nevent: statistics\ndata: ").getBytes(StandardCharsets.UTF_8);
+        bytes.write(id, 0, id.length);
+        bytes.write(snapshot.getJson(), 0, snapshot.getJson().length);
+        bytes.write('\n');
+        bytes.write('\n');
+        return bytes.toByteArray();
+    }
+
+    private class Subscriber implements AsyncListener, WriteListener {
+
+        private final AsyncContext asyncContext;
+
+        private final ServletOutputStream output;
+
+        private final AtomicReference<byte[]> pending = new AtomicReference<>();
+
+        /**
+         * Etag of the last event offered, only used by the fan-out thread.
+         */
+        private String offeredEtag;
+
+        private Subscriber(AsyncContext asyncContext, ServletOutputStream output) {
+            this.asyncContext = asyncContext;
+            this.output = output;
+        }
+
+        /**
+         * Makes {@code bytes} the next thing to write, replacing an event not written yet. A heartbeat never replaces an
+         * event. Starts a write on a container thread when nothing was pending, as otherwise a write is either running or
+         * waiting for {@link #onWritePossible()}.
+         */
+        private void offer(byte[] bytes) {
+            if (bytes == HEARTBEAT) {
+                if (!pending.compareAndSet(null, HEARTBEAT)) {
+                    return;
+                }
+            }
+            else {
+                byte[] replaced = pending.getAndSet(bytes);
+                if (replaced != null) {
+                    if (replaced != HEARTBEAT) {
+                        droppedEvents.increment();
+                    }
+                    return;
+                }
+            }
+            try {
+                asyncContext.start(this::write);
+            } catch (IllegalStateException e) {
+                close();
+            }
+        }
+
+        /**
+         * Writes pending events while the connection takes them. Stops either with nothing pending, so the next
+         * {@link #offer} starts another write, or with the output not ready, so the container calls
+         * {@link #onWritePossible()} once it is.
+         */
+        private synchronized void write() {
+            try {
+                while (pending.get() != null && output.isReady()) {
+                    output.write(pending.getAndSet(null));
+                    if (output.isReady()) {
+                        output.flush();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (subscribers.remove(this)) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    // already completed by the container
+                }
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            write();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
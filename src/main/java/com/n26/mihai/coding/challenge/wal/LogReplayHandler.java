@@ -0,0 +1,10 @@
+package com.n26.mihai.coding.challenge.wal;
+
+import java.math.BigDecimal;
+
+@FunctionalInterface
+public interface LogReplayHandler {
+
+    public void onTransaction(long timestampMillis, BigDecimal amount, String key);
+
+}
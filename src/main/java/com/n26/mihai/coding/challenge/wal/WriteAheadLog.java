@@ -0,0 +1,338 @@
+package com.n26.mihai.coding.challenge.wal;
+
+import sun.nio.ch.DirectBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of accepted transactions, written to memory-mapped segment files of {@code segmentBytes} bytes.
+ * <p>
+ * A segment takes the transactions that arrive during {@code segmentMillis} of {@code clock} time and is named after the
+ * millisecond it was opened at. Since only transactions younger than the window are accepted, a segment only holds
+ * expired transactions once {@code segmentMillis} plus the window have passed since it was opened; it is deleted on the
+ * next rotation after that. {@link #replay} reads back the segments that are still inside the window.
+ * <p>
+ * Each record is {@code [length][crc32][timestamp][scale][flags][amount][key]}, with the amount as a long when it fits
+ * and as the bytes of its unscaled value otherwise. Replay stops at the first record with a zero length or a bad
+ * checksum, which is where the process stopped writing. Mappings are released as soon as a segment is closed or a replay
+ * is done with it, rather than when the garbage collector gets to them, so deleted segments free their disk space and
+ * address space at once. Thread safe.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    public enum FsyncPolicy {
+        /**
+         * Forces the segment at the end of every request, before it is acknowledged.
+         */
+        BATCH,
+        /**
+         * Forces the segment every {@code wal-fsync-interval-millis}.
+         */
+        PERIODIC,
+        /**
+         * Leaves flushing to the operating system.
+         */
+        NONE
+    }
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte DECIMAL_AMOUNT = 1;
+
+    private static final byte KEYED = 2;
+
+    private final Path directory;
+
+    private final long segmentMillis;
+
+    private final int segmentBytes;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final LongSupplier windowMillis;
+
+    private final Clock clock;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private Segment current;
+
+    public WriteAheadLog(Path directory, long segmentMillis, int segmentBytes, FsyncPolicy fsyncPolicy, LongSupplier windowMillis,
+                         Clock clock) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentMillis = segmentMillis;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        List<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    found.add(new Segment(file, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        found.sort((left, right) -> Long.compare(left.startMillis, right.startMillis));
+        segments.addAll(found);
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Deletes the segments that only hold expired transactions and hands every transaction of the others, newer than
+     * {@code fromMillis}, to {@code handler} in the order they were logged.
+     *
+     * @return the number of transactions replayed
+     */
+    public synchronized long replay(long fromMillis, LogReplayHandler handler) throws IOException {
+        deleteExpiredSegments(clock.millis());
+        long replayed = 0;
+        for (Segment segment : segments) {
+            if (segment == current) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                try {
+                    replayed += replay(buffer, fromMillis, handler);
+                } finally {
+                    unmap(buffer);
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Appends an accepted transaction; {@code key} may be null.
+     *
+     * @throws IllegalArgumentException when the amount's scale does not fit the record's signed byte
+     */
+    public void append(long timestampMillis, BigDecimal amount, String key) {
+        if (amount.precision() <= 18) {
+            append(timestampMillis, amount.unscaledValue().longValue(), null, amount.scale(), key);
+        }
+        else {
+            append(timestampMillis, 0, amount.unscaledValue().toByteArray(), amount.scale(), key);
+        }
+    }
+
+    /**
+     * Appends an accepted transaction whose amount is {@code unscaledAmount} at {@code scale}; {@code key} may be null.
+     *
+     * @throws IllegalArgumentException when {@code scale} does not fit the record's signed byte
+     */
+    public void append(long timestampMillis, long unscaledAmount, int scale, String key) {
+        append(timestampMillis, unscaledAmount, null, scale, key);
+    }
+
+    private void append(long timestampMillis, long unscaledAmount, byte[] unscaled, int scale, String key) {
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Scale " + scale + " does not fit a log record");
+        }
+        byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 1 + 1 + (unscaled == null ? 8 : 4 + unscaled.length) + (keyBytes == null ? 0 : 2 + keyBytes.length);
+        if (HEADER_BYTES + length > segmentBytes) {
+            throw new IllegalArgumentException("Transaction of " + length + " bytes does not fit a log segment");
+        }
+        synchronized (this) {
+            long currentMillis = clock.millis();
+            if (current == null || currentMillis >= current.startMillis + segmentMillis || current.position + HEADER_BYTES + length > segmentBytes) {
+                rotate(currentMillis);
+            }
+            MappedByteBuffer buffer = current.buffer;
+            int start = current.position;
+            buffer.position(start + HEADER_BYTES);
+            buffer.putLong(timestampMillis);
+            buffer.put((byte) scale);
+            buffer.put((byte) ((unscaled == null ? 0 : DECIMAL_AMOUNT) | (keyBytes == null ? 0 : KEYED)));
+            if (unscaled == null) {
+                buffer.putLong(unscaledAmount);
+            }
+            else {
+                buffer.putInt(unscaled.length);
+                buffer.put(unscaled);
+            }
+            if (keyBytes != null) {
+                buffer.putShort((short) keyBytes.length);
+                buffer.put(keyBytes);
+            }
+            buffer.putInt(start + 4, checksum(buffer, start + HEADER_BYTES, length));
+            buffer.putInt(start, length);
+            current.position = start + HEADER_BYTES + length;
+        }
+    }
+
+    /**
+     * Marks the end of a request's appends, forcing them to disk under {@link FsyncPolicy#BATCH}.
+     */
+    public void endBatch() {
+        if (fsyncPolicy == FsyncPolicy.BATCH) {
+            sync();
+        }
+    }
+
+    public void sync() {
+        Segment segment;
+        synchronized (this) {
+            segment = current;
+        }
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (current != null) {
+            current.release(fsyncPolicy != FsyncPolicy.NONE);
+        }
+        current = null;
+    }
+
+    private long replay(ByteBuffer buffer, long fromMillis, LogReplayHandler handler) {
+        long replayed = 0;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.limit()
+                    || buffer.getInt(position + 4) != checksum(buffer, position + HEADER_BYTES, length)) {
+                break;
+            }
+            buffer.position(position + HEADER_BYTES);
+            long timestampMillis = buffer.getLong();
+            int scale = buffer.get();
+            byte flags = buffer.get();
+            BigDecimal amount;
+            if ((flags & DECIMAL_AMOUNT) == 0) {
+                amount = BigDecimal.valueOf(buffer.getLong(), scale);
+            }
+            else {
+                byte[] unscaled = new byte[buffer.getInt()];
+                buffer.get(unscaled);
+                amount = new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            String key = null;
+            if ((flags & KEYED) != 0) {
+                byte[] keyBytes = new byte[buffer.getShort()];
+                buffer.get(keyBytes);
+                key = new String(keyBytes, StandardCharsets.UTF_8);
+            }
+            if (timestampMillis >= fromMillis) {
+                handler.onTransaction(timestampMillis, amount, key);
+                replayed++;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return replayed;
+    }
+
+    private void rotate(long currentMillis) {
+        if (current != null) {
+            current.release(fsyncPolicy != FsyncPolicy.NONE);
+        }
+        deleteExpiredSegments(currentMillis);
+        long startMillis = currentMillis;
+        if (!segments.isEmpty() && segments.getLast().startMillis >= startMillis) {
+            startMillis = segments.getLast().startMillis + 1;
+        }
+        Path file = directory.resolve(startMillis + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            current = new Segment(file, startMillis);
+            current.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            current = null;
+            throw new UncheckedIOException(e);
+        }
+        segments.addLast(current);
+    }
+
+    private void deleteExpiredSegments(long currentMillis) {
+        long expiredBefore = currentMillis - windowMillis.getAsLong() - segmentMillis;
+        while (!segments.isEmpty() && segments.getFirst() != current && segments.getFirst().startMillis < expiredBefore) {
+            Segment segment = segments.removeFirst();
+            segment.release(false);
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer record = buffer.duplicate();
+        record.limit(offset + length).position(offset);
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        ((DirectBuffer) buffer).cleaner().clean();
+    }
+
+    /**
+     * Forces and releases its mapping under its own lock, since {@link #sync()} forces the current segment without
+     * holding the log's lock and must not touch a buffer that a rotation has unmapped in the meantime.
+     */
+    private static class Segment {
+
+        private final Path file;
+
+        private final long startMillis;
+
+        private MappedByteBuffer buffer;
+
+        private int position;
+
+        private Segment(Path file, long startMillis) {
+            this.file = file;
+            this.startMillis = startMillis;
+        }
+
+        private synchronized void force() {
+            if (buffer != null) {
+                buffer.force();
+            }
+        }
+
+        private synchronized void release(boolean force) {
+            if (buffer != null) {
+                if (force) {
+                    buffer.force();
+                }
+                unmap(buffer);
+                buffer = null;
+            }
+        }
+    }
+}
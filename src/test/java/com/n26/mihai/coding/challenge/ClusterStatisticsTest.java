@@ -0,0 +1,68 @@
+package com.n26.mihai.coding.challenge;
+
+import com.n26.mihai.coding.challenge.dto.BatchResultDTO;
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClusterStatisticsTest {
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @After
+    public void stopNodes() {
+        for (ConfigurableApplicationContext node : nodes) {
+            node.close();
+        }
+    }
+
+    @Test
+    public void testCoordinatorMergesPeers() throws InterruptedException {
+        //given
+        String peer1 = startNode("numeric-mode=fixed-point");
+        String peer2 = startNode("numeric-mode=decimal");
+        String coordinator = startNode("peers=" + peer1 + "," + peer2 + ",http://localhost:1", "peer-timeout-millis=500", "cluster-cache-millis=60000");
+        long now = System.currentTimeMillis();
+        //when
+        postTransactions(peer1, "[{\"amount\": 10, \"timestamp\": " + now + "}, {\"amount\": 20, \"timestamp\": " + now + "}]");
+        postTransactions(peer2, "[{\"amount\": 5.5, \"timestamp\": " + (now - 1000) + "}, {\"amount\": 40, \"timestamp\": " + now + "}]");
+        postTransactions(coordinator, "[{\"amount\": 1, \"timestamp\": " + now + "}]");
+        Thread.sleep(150l);
+        StatisticsDTO statistics = restTemplate.getForObject(coordinator + "/statistics/cluster", StatisticsDTO.class);
+        postTransactions(peer1, "[{\"amount\": 1000, \"timestamp\": " + System.currentTimeMillis() + "}]");
+        Thread.sleep(150l);
+        StatisticsDTO cached = restTemplate.getForObject(coordinator + "/statistics/cluster", StatisticsDTO.class);
+        //then
+        assertThat(statistics.getCount()).isEqualTo(5);
+        assertThat(statistics.getSum()).isEqualTo(new BigDecimal("76.50000"));
+        assertThat(statistics.getMin()).isEqualTo(new BigDecimal("1.00000"));
+        assertThat(statistics.getMax()).isEqualTo(new BigDecimal("40.00000"));
+        assertThat(cached).isEqualTo(statistics);
+    }
+
+    private String startNode(String... properties) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("--server.port=0");
+        for (String property : properties) {
+            arguments.add("--" + property);
+        }
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(Application.class).run(arguments.toArray(new String[0]));
+        nodes.add(node);
+        return "http://localhost:" + node.getEnvironment().getProperty("local.server.port");
+    }
+
+    private void postTransactions(String node, String body) {
+        restTemplate.postForObject(node + "/transactions/batch", body, BatchResultDTO.class);
+    }
+}
@@ -1,27 +1,51 @@
 package com.n26.mihai.coding.challenge;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.n26.mihai.coding.challenge.dto.BatchResultDTO;
+import com.n26.mihai.coding.challenge.dto.KeyedStatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
 import com.n26.mihai.coding.challenge.dto.TransactionDTO;
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.metrics.StatisticsMetrics;
+import com.n26.mihai.coding.challenge.metrics.StatisticsPublicMetrics;
 import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
 import com.n26.mihai.coding.challenge.service.StatisticsService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.embedded.LocalServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.DoubleSummaryStatistics;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -37,6 +61,18 @@ public class StatisticsTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private StatisticsPublicMetrics statisticsPublicMetrics;
+
+    @Autowired
+    private StatisticsMetrics statisticsMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
     @Test
     public void testEmptyStatistics() {
         StatisticsDTO emptyStatistics = this.restTemplate.getForObject("/statistics", StatisticsDTO.class);
@@ -77,6 +113,31 @@ public class StatisticsTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
     }
 
+    @Test
+    public void testTransactionCreationFromRawBody() {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String isoTimestamp = "{\"amount\": \"12.3\", \"timestamp\": \"" + new StdDateFormat().format(new Date()) + "\"}";
+        String missingAmount = "{\"timestamp\": " + System.currentTimeMillis() + "}";
+        String malformed = "{\"amount\": 12.3, \"timestamp\": ";
+        String longKey = "{\"amount\": 1, \"timestamp\": " + System.currentTimeMillis() + ", \"key\": \""
+                + new String(new char[TransactionDTO.KEY_MAX_LENGTH + 1]).replace('\0', 'k') + "\"}";
+        //when
+        ResponseEntity<String> isoResponse = this.restTemplate.postForEntity("/transactions", new HttpEntity<>(isoTimestamp, headers), String.class);
+        ResponseEntity<String> missingResponse = this.restTemplate.postForEntity("/transactions", new HttpEntity<>(missingAmount, headers), String.class);
+        ResponseEntity<String> malformedResponse = this.restTemplate.postForEntity("/transactions", new HttpEntity<>(malformed, headers), String.class);
+        ResponseEntity<String> longKeyResponse = this.restTemplate.postForEntity("/transactions", new HttpEntity<>(longKey, headers), String.class);
+        //then
+        assertThat(isoResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(missingResponse.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(missingResponse.getBody()).isEqualTo("Transaction needs a timestamp and an amount.");
+        assertThat(malformedResponse.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(longKeyResponse.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(longKeyResponse.getBody()).isEqualTo("Transaction key cannot be longer than 64 characters.");
+    }
+
     @Test
     public void testStatisticsDuplicateTransaction() throws InterruptedException {
         //given
@@ -228,4 +289,235 @@ public class StatisticsTest {
         assertThat(statistics.getMax().setScale(1, BigDecimal.ROUND_HALF_EVEN)).isEqualTo(BigDecimal.valueOf(doubleStatistics.getMax()).setScale(1, BigDecimal.ROUND_HALF_EVEN));
     }
 
+    @Test
+    public void testBatchTransactionCreationJsonArray() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        long now = System.currentTimeMillis();
+        String body = "[{\"amount\": 10, \"timestamp\": " + now + "}," +
+                "{\"amount\": 30, \"timestamp\": " + now + "}," +
+                "{\"amount\": 20, \"timestamp\": " + (now - 20000) + "}," +
+                "{\"amount\": 20, \"timestamp\": " + (now + 20000) + "}," +
+                "{\"amount\": 20}]";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        //when
+        ResponseEntity<BatchResultDTO> response = this.restTemplate.postForEntity("/transactions/batch", new HttpEntity<>(body, headers), BatchResultDTO.class);
+        Thread.sleep(150l);
+        StatisticsDTO statistics = this.restTemplate.getForObject("/statistics", StatisticsDTO.class);
+        //then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getCounts().get(TransactionStatus.CREATED)).isEqualTo(2);
+        assertThat(response.getBody().getCounts().get(TransactionStatus.OLD)).isEqualTo(1);
+        assertThat(response.getBody().getCounts().get(TransactionStatus.FUTURE)).isEqualTo(1);
+        assertThat(response.getBody().getCounts().get(TransactionStatus.INVALID)).isEqualTo(1);
+        assertThat(statistics.getCount()).isEqualTo(2);
+        assertThat(statistics.getSum()).isEqualTo(new BigDecimal(40).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+        assertThat(statistics.getMin()).isEqualTo(new BigDecimal(10).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+        assertThat(statistics.getMax()).isEqualTo(new BigDecimal(30).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+    }
+
+    @Test
+    public void testBatchTransactionCreationNdjson() {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        long now = System.currentTimeMillis();
+        String body = "{\"amount\": 10, \"timestamp\": " + now + "}\n{\"amount\": 30, \"timestamp\": " + now + "}\n{\"amount\": ";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        //when
+        ResponseEntity<BatchResultDTO> response = this.restTemplate.postForEntity("/transactions/batch", new HttpEntity<>(body, headers), BatchResultDTO.class);
+        //then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody().getCounts().get(TransactionStatus.CREATED)).isEqualTo(2);
+        assertThat(response.getBody().getCounts().get(TransactionStatus.INVALID)).isEqualTo(0);
+        assertThat(response.getBody().getError()).isNotNull();
+    }
+
+    @Test
+    public void testStatisticsPercentiles() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        List<String> body = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 100; i++) {
+            body.add("{\"amount\": " + i + ", \"timestamp\": " + now + "}");
+        }
+        //when
+        this.restTemplate.postForEntity("/transactions/batch", "[" + String.join(",", body) + "]", BatchResultDTO.class);
+        Thread.sleep(150l);
+        StatisticsDTO statistics = this.restTemplate.getForObject("/statistics?percentiles=0,50,99,100", StatisticsDTO.class);
+        ResponseEntity<StatisticsDTO> invalid = this.restTemplate.getForEntity("/statistics?percentiles=101", StatisticsDTO.class);
+        //then
+        assertThat(statistics.getCount()).isEqualTo(100);
+        assertThat(statistics.getPercentiles()).containsOnlyKeys("0", "50", "99", "100");
+        assertThat(statistics.getPercentiles().get("0")).isEqualTo(statistics.getMin());
+        assertThat(statistics.getPercentiles().get("50").doubleValue()).isCloseTo(50, within(50 * applicationProperties.getPercentileRelativeError()));
+        assertThat(statistics.getPercentiles().get("99").doubleValue()).isCloseTo(99, within(99 * applicationProperties.getPercentileRelativeError()));
+        assertThat(statistics.getPercentiles().get("100")).isEqualTo(statistics.getMax());
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testStatisticsCustomWindow() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        long now = System.currentTimeMillis();
+        String body = "[{\"amount\": 10, \"timestamp\": " + (now - 8000) + "}, {\"amount\": 30, \"timestamp\": " + now + "}]";
+        //when
+        this.restTemplate.postForEntity("/transactions/batch", body, BatchResultDTO.class);
+        Thread.sleep(150l);
+        StatisticsDTO shortWindow = this.restTemplate.getForObject("/statistics?window=PT5S", StatisticsDTO.class);
+        StatisticsDTO longWindow = this.restTemplate.getForObject("/statistics?window=PT1M", StatisticsDTO.class);
+        ResponseEntity<StatisticsDTO> invalid = this.restTemplate.getForEntity("/statistics?window=5s", StatisticsDTO.class);
+        ResponseEntity<StatisticsDTO> tooLong = this.restTemplate.getForEntity("/statistics?window=P7D", StatisticsDTO.class);
+        //then
+        assertThat(shortWindow.getCount()).isEqualTo(1);
+        assertThat(shortWindow.getSum()).isEqualTo(new BigDecimal(30).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+        assertThat(longWindow.getCount()).isEqualTo(2);
+        assertThat(longWindow.getMin()).isEqualTo(new BigDecimal(10).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(tooLong.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testKeyedStatistics() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        long now = System.currentTimeMillis();
+        String body = "{\"amount\": 10, \"timestamp\": " + now + ", \"key\": \"merchant-1\"}\n"
+                + "{\"amount\": 20, \"timestamp\": " + now + ", \"key\": \"merchant-1\"}\n"
+                + "{\"amount\": 50, \"timestamp\": " + now + ", \"key\": \"merchant-2\"}\n"
+                + "{\"amount\": 5, \"timestamp\": " + now + "}";
+        //when
+        this.restTemplate.postForEntity("/transactions/batch", body, BatchResultDTO.class);
+        StatisticsDTO merchant = this.restTemplate.getForObject("/statistics/merchant-1", StatisticsDTO.class);
+        StatisticsDTO unknown = this.restTemplate.getForObject("/statistics/merchant-3", StatisticsDTO.class);
+        KeyedStatisticsDTO[] top = this.restTemplate.getForObject("/statistics/top?limit=1", KeyedStatisticsDTO[].class);
+        //then
+        assertThat(merchant.getCount()).isEqualTo(2);
+        assertThat(merchant.getSum()).isEqualTo(new BigDecimal(30).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+        assertThat(unknown.getCount()).isEqualTo(0);
+        assertThat(top).hasSize(1);
+        assertThat(top[0].getKey()).isEqualTo("merchant-2");
+        assertThat(top[0].getStatistics().getMax()).isEqualTo(new BigDecimal(50).setScale(applicationProperties.getDecimalScale(), BigDecimal.ROUND_HALF_EVEN));
+    }
+
+    @Test
+    public void testTransactionShed() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        this.applicationProperties.setAdmissionMaxInFlight(0l);
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setAmount(BigDecimal.TEN);
+        transactionDTO.setTimestamp(new Date());
+        String body = "[{\"amount\": 10, \"timestamp\": " + System.currentTimeMillis() + "}, {\"timestamp\": " + System.currentTimeMillis() + "}]";
+        //when
+        ResponseEntity<String> response = this.restTemplate.postForEntity("/transactions", transactionDTO, String.class);
+        ResponseEntity<BatchResultDTO> batchResponse = this.restTemplate.postForEntity("/transactions/batch", body, BatchResultDTO.class);
+        Thread.sleep(50l);
+        //then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(batchResponse.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(batchResponse.getBody().getCounts().get(TransactionStatus.SHED)).isEqualTo(1);
+        assertThat(batchResponse.getBody().getCounts().get(TransactionStatus.INVALID)).isEqualTo(1);
+        assertThat(this.statisticsMetrics.getCount(TransactionStatus.SHED)).isEqualTo(2);
+        assertThat(this.statisticsService.getStatistics().getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testStatisticsMetrics() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        long now = System.currentTimeMillis();
+        String body = "[{\"amount\": 10, \"timestamp\": " + now + "}, {\"amount\": 20, \"timestamp\": " + (now - 20000) + "}]";
+        //when
+        this.restTemplate.postForEntity("/transactions/batch", body, BatchResultDTO.class);
+        Thread.sleep(150l);
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : this.statisticsPublicMetrics.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        //then
+        assertThat(metrics.get("counter.statistics.transactions.created")).isEqualTo(1l);
+        assertThat(metrics.get("counter.statistics.transactions.old")).isEqualTo(1l);
+        assertThat(metrics.get("counter.statistics.ingest.visible.samples")).isEqualTo(1l);
+        assertThat(metrics.get("gauge.statistics.ingest.backlog")).isEqualTo(0l);
+        assertThat(metrics.get("gauge.statistics.eviction.lag")).isEqualTo(0l);
+        assertThat(metrics.get("gauge.statistics.window.oldest.age").longValue()).isBetween(0l, 1000l);
+    }
+
+    @Test
+    public void testUntrackedKeyedTransactionsAreCounted() {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        this.applicationProperties.setMaxKeys(1);
+        long now = System.currentTimeMillis();
+        String body = "[{\"amount\": 10, \"timestamp\": " + now + ", \"key\": \"merchant-1\"},"
+                + " {\"amount\": 20, \"timestamp\": " + now + ", \"key\": \"merchant-2\"}]";
+        //when
+        this.restTemplate.postForEntity("/transactions/batch", body, BatchResultDTO.class);
+        //then
+        assertThat(this.statisticsMetrics.getCount(TransactionStatus.CREATED)).isEqualTo(2);
+        assertThat(this.statisticsMetrics.getUntrackedKeyed()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStatisticsConditionalGet() throws InterruptedException {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        ResponseEntity<StatisticsDTO> first = this.restTemplate.getForEntity("/statistics", StatisticsDTO.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(first.getHeaders().getETag());
+        //when
+        ResponseEntity<StatisticsDTO> unchanged = this.restTemplate.exchange("/statistics", HttpMethod.GET, new HttpEntity<>(headers), StatisticsDTO.class);
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setTimestamp(new Date());
+        transactionDTO.setAmount(BigDecimal.TEN);
+        this.restTemplate.postForEntity("/transactions", transactionDTO, String.class);
+        Thread.sleep(150l);
+        ResponseEntity<StatisticsDTO> changed = this.restTemplate.exchange("/statistics", HttpMethod.GET, new HttpEntity<>(headers), StatisticsDTO.class);
+        //then
+        assertThat(first.getHeaders().getETag()).isNotEmpty();
+        assertThat(first.getBody().getCount()).isEqualTo(0);
+        assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(unchanged.getBody()).isNull();
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(first.getHeaders().getETag());
+        assertThat(changed.getBody().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStatisticsStream() throws Exception {
+        //given
+        this.applicationProperties.setTransactionLifeMillis(10000l);
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/statistics/stream").openConnection();
+        connection.setReadTimeout(5000);
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            //when
+            StatisticsDTO initial = readEvent(events);
+            TransactionDTO transactionDTO = new TransactionDTO();
+            transactionDTO.setTimestamp(new Date());
+            transactionDTO.setAmount(BigDecimal.TEN);
+            this.restTemplate.postForEntity("/transactions", transactionDTO, String.class);
+            StatisticsDTO updated = readEvent(events);
+            //then
+            assertThat(connection.getContentType()).startsWith("text/event-stream");
+            assertThat(initial.getCount()).isEqualTo(0);
+            assertThat(updated.getCount()).isEqualTo(1);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private StatisticsDTO readEvent(BufferedReader events) throws IOException {
+        for (String line = events.readLine(); line != null; line = events.readLine()) {
+            if (line.startsWith("data: ")) {
+                return objectMapper.readValue(line.substring("data: ".length()), StatisticsDTO.class);
+            }
+        }
+        throw new EOFException();
+    }
+
 }
@@ -0,0 +1,144 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BucketRingTest {
+
+    private static final int SCALE = 2;
+
+    private static final long BUCKET_MILLIS = 10;
+
+    private static final long WINDOW_MILLIS = 1000;
+
+    @Test
+    public void testWindowMatchesReferenceWithOutOfOrderTimestamps() {
+        //given
+        Random random = new Random(26);
+        BucketRing bucketRing = new BucketRing(BUCKET_MILLIS, WINDOW_MILLIS);
+        List<long[]> transactions = new ArrayList<>();
+        //when
+        for (long now = 100000; now < 105000; now += 7) {
+            for (int i = random.nextInt(4); i > 0; i--) {
+                long timestamp = now - random.nextInt((int) WINDOW_MILLIS);
+                long amount = random.nextInt(2000000) - 1000000;
+                bucketRing.add(timestamp, amount, null);
+                transactions.add(new long[]{timestamp, amount});
+            }
+            long from = now - WINDOW_MILLIS;
+            bucketRing.expire(from);
+            StatisticsBucket window = new StatisticsBucket(0);
+            bucketRing.aggregateWindow(window);
+            //then
+            StatisticsBucket expected = new StatisticsBucket(0);
+            long oldestIncluded = Math.floorDiv(from + 1, BUCKET_MILLIS) * BUCKET_MILLIS;
+            for (long[] transaction : transactions) {
+                if (transaction[0] >= oldestIncluded) {
+                    expected.add(transaction[1]);
+                }
+            }
+            assertThat(window.getCount()).isEqualTo(expected.getCount());
+            assertThat(window.sum(SCALE)).isEqualTo(expected.sum(SCALE));
+            assertThat(window.min(SCALE)).isEqualTo(expected.min(SCALE));
+            assertThat(window.max(SCALE)).isEqualTo(expected.max(SCALE));
+        }
+    }
+
+    @Test
+    public void testDecimalAmountsExpire() {
+        //given
+        BucketRing bucketRing = new BucketRing(BUCKET_MILLIS, WINDOW_MILLIS);
+        bucketRing.add(1000, 0, new BigDecimal("5.00"));
+        bucketRing.add(1500, 0, new BigDecimal("1.00"));
+        bucketRing.add(1500, 300, null);
+        //when
+        bucketRing.expire(1200);
+        StatisticsBucket window = new StatisticsBucket(0);
+        bucketRing.aggregateWindow(window);
+        //then
+        assertThat(window.getCount()).isEqualTo(2);
+        assertThat(window.sum(SCALE)).isEqualTo(new BigDecimal("4.00"));
+        assertThat(window.min(SCALE)).isEqualTo(new BigDecimal("1.00"));
+        assertThat(window.max(SCALE)).isEqualTo(new BigDecimal("3.00"));
+    }
+
+    @Test
+    public void testExpiredBucketsCascadeIntoCoarserRing() {
+        //given
+        BucketRing coarse = new BucketRing(BUCKET_MILLIS * 4, BUCKET_MILLIS * 4 * 64);
+        BucketRing fine = new BucketRing(BUCKET_MILLIS, WINDOW_MILLIS, coarse);
+        StatisticsBucket expected = new StatisticsBucket(0);
+        for (long timestamp = 100000; timestamp < 102000; timestamp += 3) {
+            fine.add(timestamp, timestamp % 1000, null);
+            expected.add(timestamp % 1000);
+        }
+        //when
+        fine.expire(102000 - WINDOW_MILLIS);
+        StatisticsBucket window = new StatisticsBucket(0);
+        fine.aggregateWindow(window);
+        StatisticsBucket all = new StatisticsBucket(0);
+        fine.aggregate(0, 102000, all);
+        coarse.aggregate(0, 102000, all);
+        //then
+        assertThat(window.getCount()).isLessThan(expected.getCount());
+        assertThat(all.getCount()).isEqualTo(expected.getCount());
+        assertThat(all.sum(SCALE)).isEqualTo(expected.sum(SCALE));
+        assertThat(all.min(SCALE)).isEqualTo(expected.min(SCALE));
+        assertThat(all.max(SCALE)).isEqualTo(expected.max(SCALE));
+    }
+
+    @Test
+    public void testStaleTimestampsAreRejectedOnceTheirSlotIsReused() {
+        //given
+        BucketRing bucketRing = new BucketRing(BUCKET_MILLIS, 100);
+        //when
+        boolean first = bucketRing.add(1000, 100, null);
+        boolean wrapped = bucketRing.add(1130, 200, null);
+        boolean reusedSlot = bucketRing.add(1005, 400, null);
+        bucketRing.expire(1500);
+        boolean expired = bucketRing.add(1400, 800, null);
+        boolean live = bucketRing.add(1550, 1600, null);
+        StatisticsBucket window = new StatisticsBucket(0);
+        bucketRing.aggregateWindow(window);
+        //then
+        assertThat(first).isTrue();
+        assertThat(wrapped).isTrue();
+        assertThat(reusedSlot).isFalse();
+        assertThat(expired).isFalse();
+        assertThat(live).isTrue();
+        assertThat(window.getCount()).isEqualTo(1);
+        assertThat(window.sum(SCALE)).isEqualTo(new BigDecimal("16.00"));
+    }
+
+    @Test
+    public void testGrowingTheRingKeepsRecordedBuckets() {
+        //given
+        BucketRing bucketRing = new BucketRing(BUCKET_MILLIS, 100);
+        StatisticsBucket expected = new StatisticsBucket(0);
+        for (long timestamp = 1000; timestamp < 1100; timestamp += 5) {
+            bucketRing.add(timestamp, timestamp, null);
+            expected.add(timestamp);
+        }
+        //when
+        bucketRing.ensureCapacity(WINDOW_MILLIS);
+        for (long timestamp = 1100; timestamp < 1900; timestamp += 5) {
+            bucketRing.add(timestamp, timestamp, null);
+            expected.add(timestamp);
+        }
+        bucketRing.expire(999);
+        StatisticsBucket window = new StatisticsBucket(0);
+        bucketRing.aggregateWindow(window);
+        //then
+        assertThat(bucketRing.oldestMillis()).isEqualTo(1000);
+        assertThat(window.getCount()).isEqualTo(expected.getCount());
+        assertThat(window.sum(SCALE)).isEqualTo(expected.sum(SCALE));
+        assertThat(window.min(SCALE)).isEqualTo(expected.min(SCALE));
+        assertThat(window.max(SCALE)).isEqualTo(expected.max(SCALE));
+    }
+}
@@ -0,0 +1,95 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyedWindowAggregatorTest {
+
+    private static final int SCALE = 2;
+
+    private ApplicationProperties applicationProperties;
+
+    @Before
+    public void setUp() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(1000l);
+        applicationProperties.setDecimalScale(SCALE);
+        applicationProperties.setMaxKeys(3);
+        applicationProperties.setKeyBucketMillis(10l);
+    }
+
+    @Test
+    public void testTopKeysFollowWindowSums() {
+        //given
+        KeyedWindowAggregator aggregator = new KeyedWindowAggregator(applicationProperties);
+        aggregator.add("a", 1000, 500, null);
+        aggregator.add("b", 1500, 300, null);
+        aggregator.add("c", 1500, 100, null);
+        aggregator.add("c", 1600, 0, new BigDecimal("3.00"));
+        //when
+        Map<String, StatisticsBucket> before = aggregator.top(2, 0);
+        Map<String, StatisticsBucket> after = aggregator.top(2, 1200);
+        //then
+        assertThat(before.keySet()).containsExactly("a", "c");
+        assertThat(before.get("c").sum(SCALE)).isEqualTo(new BigDecimal("4.00"));
+        assertThat(after.keySet()).containsExactly("c", "b");
+    }
+
+    @Test
+    public void testPartlyExpiredKeyFallsBehind() {
+        //given
+        KeyedWindowAggregator aggregator = new KeyedWindowAggregator(applicationProperties);
+        aggregator.add("a", 1000, 9500, null);
+        aggregator.add("a", 1500, 500, null);
+        aggregator.add("b", 1500, 5000, null);
+        aggregator.add("c", 1500, 100, null);
+        //when
+        Map<String, StatisticsBucket> before = aggregator.top(1, 0);
+        Map<String, StatisticsBucket> after = aggregator.top(2, 1200);
+        //then
+        assertThat(before.keySet()).containsExactly("a");
+        assertThat(after.keySet()).containsExactly("b", "a");
+        assertThat(after.get("a").sum(SCALE)).isEqualTo(new BigDecimal("5.00"));
+    }
+
+    @Test
+    public void testTimestampOlderThanTheKeyWindowIsRejected() {
+        //given
+        KeyedWindowAggregator aggregator = new KeyedWindowAggregator(applicationProperties);
+        aggregator.add("a", 5000, 100, null);
+        aggregator.aggregateWindow("a", 4500, new StatisticsBucket(0));
+        //when
+        boolean rejected = aggregator.add("a", 4000, 100, null);
+        StatisticsBucket window = new StatisticsBucket(0);
+        aggregator.aggregateWindow("a", 4500, window);
+        //then
+        assertThat(rejected).isFalse();
+        assertThat(window.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCardinalityCapAndIdleEviction() {
+        //given
+        KeyedWindowAggregator aggregator = new KeyedWindowAggregator(applicationProperties);
+        assertThat(aggregator.add("a", 1000, 100, null)).isTrue();
+        assertThat(aggregator.add("b", 1500, 100, null)).isTrue();
+        assertThat(aggregator.add("c", 1500, 100, null)).isTrue();
+        //when
+        boolean overCap = aggregator.add("d", 1500, 100, null);
+        aggregator.evictIdle(1200);
+        boolean afterEviction = aggregator.add("d", 1500, 100, null);
+        StatisticsBucket evicted = new StatisticsBucket(0);
+        aggregator.aggregateWindow("a", 1200, evicted);
+        //then
+        assertThat(overCap).isFalse();
+        assertThat(afterEviction).isTrue();
+        assertThat(aggregator.size()).isEqualTo(3);
+        assertThat(evicted.getCount()).isZero();
+    }
+}
@@ -0,0 +1,53 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class QuantileSketchTest {
+
+    private static final double RELATIVE_ERROR = 0.01;
+
+    @Test
+    public void testQuantilesWithinRelativeError() {
+        //given
+        Random random = new Random(26);
+        double[] values = new double[10000];
+        QuantileSketch sketch = new QuantileSketch(RELATIVE_ERROR);
+        //when
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 3) * (random.nextInt(10) == 0 ? -1 : 1);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        //then
+        for (double quantile : new double[]{0, 0.05, 0.5, 0.95, 0.99, 1}) {
+            double expected = values[(int) (quantile * (values.length - 1))];
+            assertThat(sketch.quantile(quantile)).isCloseTo(expected, within(Math.abs(expected) * RELATIVE_ERROR));
+        }
+    }
+
+    @Test
+    public void testMergeAndSubtract() {
+        //given
+        QuantileSketch first = new QuantileSketch(RELATIVE_ERROR);
+        QuantileSketch second = new QuantileSketch(RELATIVE_ERROR);
+        QuantileSketch window = new QuantileSketch(RELATIVE_ERROR);
+        for (int i = 1; i <= 100; i++) {
+            first.add(i);
+            second.add(1000 + i);
+        }
+        //when
+        window.merge(first);
+        window.merge(second);
+        window.subtract(first);
+        //then
+        assertThat(window.getCount()).isEqualTo(100);
+        assertThat(window.quantile(0)).isCloseTo(1001, within(1001 * RELATIVE_ERROR));
+        assertThat(window.quantile(0.5)).isCloseTo(1050, within(1050 * RELATIVE_ERROR));
+    }
+}
@@ -0,0 +1,65 @@
+package com.n26.mihai.coding.challenge.aggregation;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatisticsBucketTest {
+
+    private static final int SCALE = 5;
+
+    @Test
+    public void testFixedPointMatchesDecimal() {
+        //given
+        Random random = new Random(26);
+        StatisticsBucket fixedBucket = new StatisticsBucket(0);
+        StatisticsBucket decimalBucket = new StatisticsBucket(0);
+        //when
+        for (int i = 0; i < 1000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextDouble() * 2000 - 1000).setScale(SCALE, BigDecimal.ROUND_HALF_EVEN);
+            fixedBucket.add(amount.unscaledValue().longValue());
+            decimalBucket.add(amount);
+        }
+        //then
+        assertThat(fixedBucket.getCount()).isEqualTo(decimalBucket.getCount());
+        assertThat(fixedBucket.sum(SCALE)).isEqualTo(decimalBucket.sum(SCALE));
+        assertThat(fixedBucket.min(SCALE)).isEqualTo(decimalBucket.min(SCALE));
+        assertThat(fixedBucket.max(SCALE)).isEqualTo(decimalBucket.max(SCALE));
+    }
+
+    @Test
+    public void testFixedPointSumOverflow() {
+        //given
+        StatisticsBucket bucket = new StatisticsBucket(0);
+        StatisticsBucket merged = new StatisticsBucket(0);
+        //when
+        for (int i = 0; i < 4; i++) {
+            bucket.add(Long.MAX_VALUE - 1);
+        }
+        merged.merge(bucket);
+        merged.merge(bucket);
+        //then
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE - 1, SCALE).multiply(BigDecimal.valueOf(8));
+        assertThat(bucket.sum(SCALE)).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE - 1, SCALE).multiply(BigDecimal.valueOf(4)));
+        assertThat(merged.sum(SCALE)).isEqualTo(expected);
+        assertThat(merged.getCount()).isEqualTo(8);
+    }
+
+    @Test
+    public void testFixedAndDecimalAmountsCombined() {
+        //given
+        StatisticsBucket bucket = new StatisticsBucket(0);
+        BigDecimal large = new BigDecimal("123456789012345678901.00000");
+        //when
+        bucket.add(-150000l);
+        bucket.add(large);
+        //then
+        assertThat(bucket.getCount()).isEqualTo(2);
+        assertThat(bucket.sum(SCALE)).isEqualTo(large.subtract(new BigDecimal("1.50000")));
+        assertThat(bucket.min(SCALE)).isEqualTo(new BigDecimal("-1.50000"));
+        assertThat(bucket.max(SCALE)).isEqualTo(large);
+    }
+}
@@ -0,0 +1,70 @@
+package com.n26.mihai.coding.challenge.binary;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends full batches of current transactions to a running binary listener from several connections and prints the
+ * status counts and throughput. Arguments, all optional: host, port, connections, seconds, frames per batch, distinct
+ * keys (0 for none), scale.
+ */
+public class BinaryLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 9026;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        int frames = args.length > 4 ? Integer.parseInt(args[4]) : 4096;
+        int keyCount = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        int scale = args.length > 6 ? Integer.parseInt(args[6]) : 5;
+        byte[][] keys = new byte[keyCount][];
+        int keyBytes = 0;
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+            keyBytes = Math.max(keyBytes, keys[i].length);
+        }
+        AtomicLongArray statusCounts = new AtomicLongArray(TransactionStatus.values().length);
+        long deadlineMillis = System.currentTimeMillis() + seconds * 1000;
+        List<Thread> producers = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (int connection = 0; connection < connections; connection++) {
+            int frameKeyBytes = keyBytes;
+            Thread producer = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try (BinaryTransactionClient client = new BinaryTransactionClient(new InetSocketAddress(host, port), scale, frameKeyBytes, frames)) {
+                    while (System.currentTimeMillis() < deadlineMillis) {
+                        long timestampMillis = System.currentTimeMillis();
+                        while (!client.isFull()) {
+                            client.add(timestampMillis, random.nextLong(1, 1000000000l), keyCount == 0 ? null : keys[random.nextInt(keyCount)]);
+                        }
+                        long[] counts = client.send();
+                        for (int i = 0; i < counts.length; i++) {
+                            statusCounts.addAndGet(i, counts[i]);
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, "binary-load-" + connection);
+            producer.start();
+            producers.add(producer);
+        }
+        long total = 0;
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        for (TransactionStatus status : TransactionStatus.values()) {
+            System.out.println(status + ": " + statusCounts.get(status.ordinal()));
+            total += statusCounts.get(status.ordinal());
+        }
+        System.out.printf("%d transactions in %.1f s: %.0f transactions/s%n", total, elapsedSeconds, total / elapsedSeconds);
+    }
+}
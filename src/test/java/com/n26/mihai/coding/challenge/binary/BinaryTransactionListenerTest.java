@@ -0,0 +1,148 @@
+package com.n26.mihai.coding.challenge.binary;
+
+import com.n26.mihai.coding.challenge.Application;
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.StatisticsService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class BinaryTransactionListenerTest {
+
+    private ConfigurableApplicationContext node;
+
+    private InetSocketAddress address;
+
+    @Before
+    public void startNode() {
+        node = new SpringApplicationBuilder(Application.class).run("--server.port=0", "--binary-listener-enabled=true",
+                "--binary-listener-port=0", "--binary-max-batch-frames=16");
+        address = new InetSocketAddress("localhost", node.getBean(BinaryTransactionListener.class).getLocalPort());
+    }
+
+    @After
+    public void stopNode() {
+        node.close();
+    }
+
+    @Test
+    public void testBatchesAreCreated() throws IOException, InterruptedException {
+        //given
+        long now = System.currentTimeMillis();
+        long[] keyedCounts;
+        long[] rescaledCounts;
+        //when
+        try (BinaryTransactionClient client = new BinaryTransactionClient(address, 5, 8, 16)) {
+            client.add(now, 1000000, "card".getBytes(StandardCharsets.UTF_8));
+            client.add(now, 250000, "card".getBytes(StandardCharsets.UTF_8));
+            client.add(now - 1000, 50000, null);
+            client.add(now - 120000, 700000, "card".getBytes(StandardCharsets.UTF_8));
+            client.add(now + 60000, 700000, null);
+            keyedCounts = client.send().clone();
+        }
+        try (BinaryTransactionClient client = new BinaryTransactionClient(address, 1, 0, 16)) {
+            client.add(now, 5, null);
+            rescaledCounts = client.send().clone();
+        }
+        Thread.sleep(100l);
+        StatisticsService statisticsService = node.getBean(StatisticsService.class);
+        StatisticsDTO statistics = statisticsService.getStatistics();
+        StatisticsDTO keyed = statisticsService.getStatistics("card");
+        //then
+        assertThat(keyedCounts[TransactionStatus.CREATED.ordinal()]).isEqualTo(3);
+        assertThat(keyedCounts[TransactionStatus.OLD.ordinal()]).isEqualTo(1);
+        assertThat(keyedCounts[TransactionStatus.FUTURE.ordinal()]).isEqualTo(1);
+        assertThat(rescaledCounts[TransactionStatus.CREATED.ordinal()]).isEqualTo(1);
+        assertThat(statistics.getCount()).isEqualTo(4);
+        assertThat(statistics.getSum()).isEqualTo(new BigDecimal("13.50000"));
+        assertThat(statistics.getMin()).isEqualTo(new BigDecimal("0.50000"));
+        assertThat(statistics.getMax()).isEqualTo(new BigDecimal("10.00000"));
+        assertThat(keyed.getCount()).isEqualTo(2);
+        assertThat(keyed.getSum()).isEqualTo(new BigDecimal("12.50000"));
+    }
+
+    @Test
+    public void testMalformedBatchClosesConnection() throws IOException {
+        //given
+        ByteBuffer header = ByteBuffer.allocate(BinaryProtocol.BATCH_HEADER_BYTES);
+        header.putInt(17).put((byte) 5).put((byte) 0).flip();
+        boolean closed;
+        //when
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.write(header);
+            closed = channel.read(ByteBuffer.allocate(BinaryProtocol.REPLY_BYTES)) < 0;
+        } catch (IOException e) {
+            closed = true;
+        }
+        //then
+        assertThat(closed).isTrue();
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockedBatchDoesNotStallOtherConnections() throws IOException, InterruptedException {
+        //given
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setBinaryListenerEnabled(true);
+        applicationProperties.setBinaryListenerPort(0);
+        applicationProperties.setBinaryMaxBatchFrames(16);
+        StatisticsService statisticsService = mock(StatisticsService.class);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            long[] timestamps = (long[]) invocation.getArguments()[0];
+            long[] statusCounts = (long[]) invocation.getArguments()[5];
+            if (timestamps[0] == 0) {
+                blocked.countDown();
+                release.await();
+            }
+            statusCounts[TransactionStatus.CREATED.ordinal()] = (int) invocation.getArguments()[4];
+            return null;
+        }).when(statisticsService).createTransactions(any(long[].class), any(long[].class), anyInt(), any(String[].class), anyInt(), any(long[].class));
+        BinaryTransactionListener listener = new BinaryTransactionListener(statisticsService, applicationProperties);
+        listener.start();
+        InetSocketAddress listenerAddress = new InetSocketAddress("localhost", listener.getLocalPort());
+        Thread blockedProducer = new Thread(() -> {
+            try (BinaryTransactionClient client = new BinaryTransactionClient(listenerAddress, 5, 0, 16)) {
+                client.add(0, 1, null);
+                client.send();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long[] counts;
+        //when
+        try {
+            blockedProducer.start();
+            blocked.await();
+            try (BinaryTransactionClient client = new BinaryTransactionClient(listenerAddress, 5, 0, 16)) {
+                client.add(1, 1, null);
+                client.add(2, 1, null);
+                counts = client.send().clone();
+            }
+        } finally {
+            release.countDown();
+            blockedProducer.join();
+            listener.stop();
+        }
+        //then
+        assertThat(counts[TransactionStatus.CREATED.ordinal()]).isEqualTo(2);
+    }
+}
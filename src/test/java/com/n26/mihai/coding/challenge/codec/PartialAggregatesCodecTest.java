@@ -0,0 +1,41 @@
+package com.n26.mihai.coding.challenge.codec;
+
+import com.n26.mihai.coding.challenge.aggregation.PartialAggregates;
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartialAggregatesCodecTest {
+
+    private static final int SCALE = 2;
+
+    @Test
+    public void testRoundTripKeepsFixedPointAndDecimalBuckets() {
+        //given
+        PartialAggregates partialAggregates = new PartialAggregates(10);
+        StatisticsBucket fixedPoint = new StatisticsBucket(100);
+        fixedPoint.add(-250);
+        fixedPoint.add(1000);
+        StatisticsBucket decimal = new StatisticsBucket(101);
+        decimal.add(new BigDecimal("123456789012345678901234.50"));
+        decimal.add(700, null);
+        partialAggregates.merge(fixedPoint);
+        partialAggregates.merge(decimal);
+        //when
+        PartialAggregates decoded = PartialAggregatesCodec.decode(PartialAggregatesCodec.encode(partialAggregates, SCALE), SCALE);
+        StatisticsBucket window = new StatisticsBucket(0);
+        decoded.aggregate(0, window);
+        StatisticsBucket recent = new StatisticsBucket(0);
+        decoded.aggregate(1009, recent);
+        //then
+        assertThat(decoded.getBucketMillis()).isEqualTo(10);
+        assertThat(window.getCount()).isEqualTo(4);
+        assertThat(window.sum(SCALE)).isEqualTo(new BigDecimal("123456789012345678901249.00"));
+        assertThat(window.min(SCALE)).isEqualTo(new BigDecimal("-2.50"));
+        assertThat(window.max(SCALE)).isEqualTo(new BigDecimal("123456789012345678901234.50"));
+        assertThat(recent.getCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,84 @@
+package com.n26.mihai.coding.challenge.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionDecoderTest {
+
+    private static final int SCALE = 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testPlainNumbersAreDecodedToPrimitives() throws IOException {
+        //given
+        String body = "{\"amount\":-12.3,\"ignored\":{\"nested\":[1,2]},\"timestamp\":1478192204000,\"key\":\"card\"}";
+        //when
+        TransactionDecoder transaction = decode(body);
+        //then
+        assertThat(transaction.isValid()).isTrue();
+        assertThat(transaction.getTimestampMillis()).isEqualTo(1478192204000l);
+        assertThat(transaction.getAmount()).isEqualTo(-1230000l);
+        assertThat(transaction.getDecimalAmount()).isNull();
+        assertThat(transaction.getKey()).isEqualTo("card");
+    }
+
+    @Test
+    public void testOtherFormsAreDecodedLikeTheDTO() throws IOException {
+        //given
+        String rounded = "{\"timestamp\":\"2016-11-03T16:56:44.000Z\",\"amount\":\"1.234565\"}";
+        String exponent = "{\"timestamp\":0,\"amount\":1.5e2}";
+        String large = "{\"timestamp\":0,\"amount\":123456789012345678901234.5}";
+        //when
+        TransactionDecoder roundedTransaction = decode(rounded);
+        TransactionDecoder exponentTransaction = decode(exponent);
+        TransactionDecoder largeTransaction = decode(large);
+        //then
+        assertThat(roundedTransaction.getTimestampMillis()).isEqualTo(1478192204000l);
+        assertThat(roundedTransaction.getAmount()).isEqualTo(123456l);
+        assertThat(roundedTransaction.getKey()).isNull();
+        assertThat(exponentTransaction.getAmount()).isEqualTo(15000000l);
+        assertThat(largeTransaction.getDecimalAmount()).isEqualTo(new BigDecimal("123456789012345678901234.50000"));
+    }
+
+    @Test
+    public void testMissingFieldsAndLongKeysAreInvalid() throws IOException {
+        //given
+        String nullAmount = "{\"timestamp\":1478192204000,\"amount\":null}";
+        String missingTimestamp = "{\"amount\":1}";
+        String longKey = "{\"timestamp\":1478192204000,\"amount\":1,\"key\":\"" + new String(new char[65]).replace('\0', 'k') + "\"}";
+        //when
+        boolean nullAmountValid = decode(nullAmount).isValid();
+        boolean missingTimestampValid = decode(missingTimestamp).isValid();
+        TransactionDecoder longKeyTransaction = decode(longKey);
+        //then
+        assertThat(nullAmountValid).isFalse();
+        assertThat(missingTimestampValid).isFalse();
+        assertThat(longKeyTransaction.isValid()).isFalse();
+        assertThat(longKeyTransaction.getViolation()).isEqualTo("Transaction key cannot be longer than 64 characters.");
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testTruncatedObjectIsRejected() throws IOException {
+        decode("{\"timestamp\":1478192204000,\"amount\":1");
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testMalformedAmountIsRejected() throws IOException {
+        decode("{\"timestamp\":1478192204000,\"amount\":\"twelve\"}");
+    }
+
+    private TransactionDecoder decode(String body) throws IOException {
+        TransactionDecoder transaction = new TransactionDecoder(objectMapper, SCALE);
+        transaction.decode(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return transaction;
+    }
+}
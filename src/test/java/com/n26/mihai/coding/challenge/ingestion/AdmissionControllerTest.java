@@ -0,0 +1,72 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testStaticLimitCountsBacklog() {
+        //given
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setAdmissionMaxInFlight(3l);
+        AtomicLong backlog = new AtomicLong(1);
+        AdmissionController admissionController = new AdmissionController(applicationProperties, backlog::get);
+        //when
+        boolean first = admissionController.tryAcquire();
+        boolean second = admissionController.tryAcquire();
+        boolean third = admissionController.tryAcquire();
+        admissionController.release(1);
+        backlog.incrementAndGet();
+        boolean afterSubmit = admissionController.tryAcquire();
+        //then
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isFalse();
+        assertThat(afterSubmit).isFalse();
+        assertThat(admissionController.getInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    public void testAdaptiveLimitFollowsLatency() {
+        //given
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setAdmissionMode("adaptive");
+        applicationProperties.setAdmissionMaxInFlight(1000l);
+        applicationProperties.setAdmissionMinInFlight(500l);
+        applicationProperties.setAdmissionTargetLatencyMillis(10l);
+        AdmissionController admissionController = new AdmissionController(applicationProperties, () -> 0);
+        //when
+        admissionController.onVisibleLatency(TimeUnit.MILLISECONDS.toNanos(20));
+        long afterSlowSample = admissionController.getLimit();
+        for (int i = 0; i < 10; i++) {
+            admissionController.onVisibleLatency(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        long afterSlowSamples = admissionController.getLimit();
+        admissionController.onVisibleLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        long afterFastSample = admissionController.getLimit();
+        //then
+        assertThat(afterSlowSample).isEqualTo(900);
+        assertThat(afterSlowSamples).isEqualTo(500);
+        assertThat(afterFastSample).isEqualTo(510);
+    }
+
+    @Test
+    public void testNoneAdmitsEverything() {
+        //given
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setAdmissionMode("none");
+        applicationProperties.setAdmissionMaxInFlight(0l);
+        AdmissionController admissionController = new AdmissionController(applicationProperties, () -> 100);
+        //when
+        boolean admitted = admissionController.tryAcquire();
+        //then
+        assertThat(admitted).isTrue();
+        assertThat(admissionController.getLimit()).isEqualTo(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,64 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import com.n26.mihai.coding.challenge.aggregation.StatisticsBucket;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedTransactionIngestorTest {
+
+    private static final long NOW = 1478192204000l;
+
+    private static final int WRITERS = 8;
+
+    private static final int TRANSACTIONS_PER_WRITER = 10000;
+
+    @Test
+    public void testConcurrentWritersAreMergedAcrossStripes() throws InterruptedException {
+        //given
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(60000l);
+        applicationProperties.setIngestStripes(3);
+        applicationProperties.setPercentilesEnabled(false);
+        StripedTransactionIngestor ingestor = new StripedTransactionIngestor(applicationProperties);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                TransactionBatch batch = new TransactionBatch(16);
+                for (int i = 0; i < TRANSACTIONS_PER_WRITER; i++) {
+                    long timestamp = NOW - i;
+                    if (writer % 2 == 0) {
+                        ingestor.submit(timestamp, i, null);
+                        continue;
+                    }
+                    batch.add(timestamp, -i, null);
+                    if (batch.isFull() || i == TRANSACTIONS_PER_WRITER - 1) {
+                        ingestor.submit(batch);
+                        batch.clear();
+                    }
+                }
+            }));
+        }
+        //when
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        ingestor.submit(NOW, 0, new BigDecimal("1000000.000"));
+        StatisticsBucket window = new StatisticsBucket(0);
+        ingestor.aggregateWindow(NOW - 60000, window, null);
+        //then
+        assertThat(window.getCount()).isEqualTo(WRITERS * TRANSACTIONS_PER_WRITER + 1);
+        assertThat(window.sum(3)).isEqualTo(new BigDecimal("1000000.000"));
+        assertThat(window.min(3)).isEqualTo(new BigDecimal("-9.999"));
+        assertThat(window.max(3)).isEqualTo(new BigDecimal("1000000.000"));
+        assertThat(ingestor.oldestMillis()).isEqualTo(NOW - TRANSACTIONS_PER_WRITER);
+        assertThat(ingestor.hasPending()).isFalse();
+    }
+}
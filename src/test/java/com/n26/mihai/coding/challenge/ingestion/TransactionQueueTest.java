@@ -0,0 +1,103 @@
+package com.n26.mihai.coding.challenge.ingestion;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionQueueTest {
+
+    private static final int PRODUCERS = 4;
+
+    private static final int TRANSACTIONS_PER_PRODUCER = 20000;
+
+    @Test
+    public void testProducersLoseAndDuplicateNothingAcrossWraparound() throws InterruptedException {
+        //given
+        TransactionQueue transactionQueue = new TransactionQueue(8);
+        int[] seen = new int[PRODUCERS * TRANSACTIONS_PER_PRODUCER];
+        long[] lastAmounts = new long[PRODUCERS];
+        boolean[] outOfOrder = new boolean[1];
+        for (int p = 0; p < PRODUCERS; p++) {
+            lastAmounts[p] = -1;
+        }
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers.add(new Thread(() -> {
+                TransactionBatch batch = new TransactionBatch(3);
+                for (int i = 0; i < TRANSACTIONS_PER_PRODUCER; i++) {
+                    long id = producer * TRANSACTIONS_PER_PRODUCER + i;
+                    if (producer % 2 == 0) {
+                        transactionQueue.put(id, i, null);
+                        continue;
+                    }
+                    batch.add(id, i, null);
+                    if (batch.isFull() || i == TRANSACTIONS_PER_PRODUCER - 1) {
+                        transactionQueue.putAll(batch);
+                        batch.clear();
+                    }
+                }
+            }));
+        }
+        //when
+        producers.forEach(Thread::start);
+        int drained = 0;
+        while (drained < seen.length) {
+            drained += transactionQueue.drain((timestampMillis, amount, decimalAmount) -> {
+                seen[(int) timestampMillis]++;
+                int producer = (int) (timestampMillis / TRANSACTIONS_PER_PRODUCER);
+                outOfOrder[0] |= amount <= lastAmounts[producer];
+                lastAmounts[producer] = amount;
+            }, 5);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        //then
+        for (int count : seen) {
+            assertThat(count).isEqualTo(1);
+        }
+        assertThat(outOfOrder[0]).isFalse();
+        assertThat(transactionQueue.isEmpty()).isTrue();
+        assertThat(transactionQueue.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFullQueueHoldsTheProducerUntilDrained() throws InterruptedException {
+        //given
+        TransactionQueue transactionQueue = new TransactionQueue(2);
+        transactionQueue.put(1l, 1l, null);
+        transactionQueue.put(2l, 2l, BigDecimal.ONE);
+        Thread producer = new Thread(() -> transactionQueue.put(3l, 3l, null));
+        List<Long> timestamps = new ArrayList<>();
+        //when
+        producer.start();
+        producer.join(100);
+        boolean heldWhileFull = producer.isAlive();
+        int firstDrain = transactionQueue.drain((timestampMillis, amount, decimalAmount) -> timestamps.add(timestampMillis), 10);
+        producer.join();
+        int secondDrain = transactionQueue.drain((timestampMillis, amount, decimalAmount) -> timestamps.add(timestampMillis), 10);
+        //then
+        assertThat(heldWhileFull).isTrue();
+        assertThat(firstDrain).isEqualTo(2);
+        assertThat(secondDrain).isEqualTo(1);
+        assertThat(timestamps).containsExactly(1l, 2l, 3l);
+        assertThat(transactionQueue.isEmpty()).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchLargerThanTheQueueIsRefused() {
+        //given
+        TransactionQueue transactionQueue = new TransactionQueue(4);
+        TransactionBatch batch = new TransactionBatch(5);
+        for (int i = 0; i < 5; i++) {
+            batch.add(i, i, null);
+        }
+        //when
+        transactionQueue.putAll(batch);
+    }
+}
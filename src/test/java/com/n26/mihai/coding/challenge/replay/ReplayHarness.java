@@ -0,0 +1,415 @@
+package com.n26.mihai.coding.challenge.replay;
+
+import com.n26.mihai.coding.challenge.dto.StatisticsDTO;
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import com.n26.mihai.coding.challenge.service.StatisticsSnapshot;
+import com.n26.mihai.coding.challenge.service.impl.StatisticsServiceImpl;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Streams a file of transactions through {@link StatisticsServiceImpl} on a {@link VirtualClock}, as fast as the
+ * engine takes them, and compares the published statistics with an exact computation every {@code checkpointMillis}
+ * of transaction time.
+ * <p>
+ * The file has one {@code <epoch millis>,<amount>} line per transaction, roughly in timestamp order. The clock follows
+ * the newest timestamp read, so lines older than the window count as OLD, as they would have live. Checkpoints are
+ * placed where the window starts on a bucket boundary, where the bucketed window of the engine is exact.
+ * <p>
+ * Arguments, all optional: file, transactions and duration in millis to generate when the file does not exist,
+ * checkpoint interval in millis. The {@code ingest-mode} and {@code numeric-mode} system properties select the engine.
+ * Admission control should be off, since shed transactions would be missing from the engine but not from the
+ * reference.
+ */
+public class ReplayHarness {
+
+    private static final int BATCH_SIZE = 1024;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final long checkpointMillis;
+
+    public ReplayHarness(ApplicationProperties applicationProperties, long checkpointMillis) {
+        if (checkpointMillis <= 0 || checkpointMillis % applicationProperties.getBucketMillis() != 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be a multiple of " + applicationProperties.getBucketMillis());
+        }
+        this.applicationProperties = applicationProperties;
+        this.checkpointMillis = checkpointMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length > 0 ? args[0] : "target/replay.csv");
+        long transactions = args.length > 1 ? Long.parseLong(args[1]) : 50000000l;
+        long durationMillis = args.length > 2 ? Long.parseLong(args[2]) : 3600000l;
+        long checkpointMillis = args.length > 3 ? Long.parseLong(args[3]) : 60000l;
+        if (!Files.exists(file)) {
+            generate(file, transactions, System.currentTimeMillis() - durationMillis, durationMillis, 26l);
+        }
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(60000l);
+        applicationProperties.setDecimalScale(5);
+        applicationProperties.setIngestMode(System.getProperty("ingest-mode", "queued"));
+        applicationProperties.setNumericMode(System.getProperty("numeric-mode", "decimal"));
+        applicationProperties.setAdmissionMode("none");
+        System.out.println(new ReplayHarness(applicationProperties, checkpointMillis).replay(file));
+    }
+
+    /**
+     * Writes {@code transactions} evenly spread over {@code durationMillis}, each up to 200 ms late and one in ten
+     * thousand ten minutes late, with amounts between 0.01 and 10000.00.
+     */
+    public static void generate(Path file, long transactions, long startMillis, long durationMillis, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder line = new StringBuilder(32);
+        try (Writer out = Files.newBufferedWriter(file)) {
+            for (long i = 0; i < transactions; i++) {
+                long timestampMillis = startMillis + i * durationMillis / transactions - random.nextInt(200);
+                if (random.nextInt(10000) == 0) {
+                    timestampMillis -= 600000;
+                }
+                int cents = 1 + random.nextInt(1000000);
+                line.setLength(0);
+                line.append(timestampMillis).append(',').append(cents / 100).append('.');
+                if (cents % 100 < 10) {
+                    line.append('0');
+                }
+                line.append(cents % 100).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    public ReplayReport replay(Path file) throws IOException, InterruptedException {
+        int scale = applicationProperties.getDecimalScale();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        ReplayReport report = new ReplayReport();
+        ExactWindow reference = new ExactWindow(applicationProperties.getTransactionLifeMillis());
+        Replay replay = null;
+        long startNanos = System.nanoTime();
+        try (InputStream in = Files.newInputStream(file)) {
+            TransactionReader reader = new TransactionReader(in, scale);
+            while (reader.next()) {
+                if (replay == null) {
+                    replay = new Replay(reader.timestampMillis, reference, report);
+                }
+                while (reader.timestampMillis > replay.nextCheckpointMillis) {
+                    replay.checkpoint();
+                }
+                replay.add(reader.timestampMillis, reader.amount);
+            }
+            if (replay != null) {
+                replay.checkpoint();
+            }
+        } finally {
+            if (replay != null) {
+                replay.statisticsService.stop();
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - startNanos;
+        for (MemoryPoolMXBean pool : heapPools) {
+            report.peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+        return report;
+    }
+
+    /**
+     * State of one replay: the engine under test on its own clock and the batch being filled.
+     */
+    private class Replay {
+
+        private final VirtualClock clock;
+
+        private final StatisticsServiceImpl statisticsService;
+
+        private final ExactWindow reference;
+
+        private final ReplayReport report;
+
+        private final long[] timestamps = new long[BATCH_SIZE];
+
+        private final long[] amounts = new long[BATCH_SIZE];
+
+        private final String[] keys = new String[BATCH_SIZE];
+
+        private final long[] statusCounts = new long[TransactionStatus.values().length];
+
+        private int size;
+
+        private long nextCheckpointMillis;
+
+        private Replay(long firstMillis, ExactWindow reference, ReplayReport report) throws IOException {
+            this.clock = new VirtualClock(firstMillis);
+            this.statisticsService = new StatisticsServiceImpl(applicationProperties, clock);
+            this.statisticsService.start();
+            this.reference = reference;
+            this.report = report;
+            long firstCheckpointMillis = firstMillis + checkpointMillis;
+            long windowStart = firstCheckpointMillis - applicationProperties.getTransactionLifeMillis() + 1;
+            this.nextCheckpointMillis = firstCheckpointMillis + Math.floorMod(-windowStart, applicationProperties.getBucketMillis());
+        }
+
+        private void add(long timestampMillis, long amount) {
+            timestamps[size] = timestampMillis;
+            amounts[size] = amount;
+            size++;
+            if (size == BATCH_SIZE) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            if (size == 0) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                clock.advanceTo(timestamps[i]);
+            }
+            statisticsService.createTransactions(timestamps, amounts, applicationProperties.getDecimalScale(), keys, size, statusCounts);
+            for (int i = 0; i < size; i++) {
+                reference.add(timestamps[i], amounts[i], clock.millis());
+            }
+            for (int status = 0; status < statusCounts.length; status++) {
+                report.statusCounts[status] += statusCounts[status];
+            }
+            report.transactions += size;
+            size = 0;
+        }
+
+        /**
+         * Moves the clock to the next checkpoint, waits until the engine has applied everything and published at that
+         * time, and compares.
+         */
+        private void checkpoint() throws InterruptedException {
+            submit();
+            clock.advanceTo(nextCheckpointMillis);
+            while (statisticsService.getMetrics().getBacklog() > 0) {
+                Thread.yield();
+            }
+            // the second publication after this point has started after the clock moved
+            for (int publications = 0; publications < 2; publications++) {
+                StatisticsSnapshot previous = statisticsService.getSnapshot();
+                while (statisticsService.getSnapshot() == previous) {
+                    Thread.sleep(1);
+                }
+            }
+            StatisticsDTO expected = reference.statistics(nextCheckpointMillis, applicationProperties.getDecimalScale());
+            StatisticsDTO actual = statisticsService.getStatistics();
+            report.checkpoints++;
+            if (!expected.equals(actual)) {
+                report.mismatches.add("At " + nextCheckpointMillis + " expected " + expected + " but was " + actual);
+            }
+            nextCheckpointMillis += checkpointMillis;
+        }
+    }
+
+    @Getter
+    public static class ReplayReport {
+
+        private long transactions;
+
+        private final long[] statusCounts = new long[TransactionStatus.values().length];
+
+        private long checkpoints;
+
+        private final List<String> mismatches = new ArrayList<>();
+
+        private long elapsedNanos;
+
+        private long peakHeapBytes;
+
+        public long getCount(TransactionStatus status) {
+            return statusCounts[status.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            StringBuilder report = new StringBuilder(String.format("Replayed %d transactions in %.1f s: %.0f transactions/s, peak heap %d MiB%n",
+                    transactions, seconds, transactions / seconds, peakHeapBytes >> 20));
+            for (TransactionStatus status : TransactionStatus.values()) {
+                report.append(String.format("%s: %d%n", status, getCount(status)));
+            }
+            report.append(String.format("%d checkpoints, %d mismatches%n", checkpoints, mismatches.size()));
+            for (String mismatch : mismatches.subList(0, Math.min(10, mismatches.size()))) {
+                report.append(mismatch).append(System.lineSeparator());
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * Exact statistics of the transactions newer than {@code windowMillis} ago, from a ring of per-millisecond totals.
+     * Transactions older than the window when added are left out, as the engine rejects them.
+     */
+    private static class ExactWindow {
+
+        private final long windowMillis;
+
+        private final long[] millis;
+
+        private final long[] counts;
+
+        private final long[] sums;
+
+        private final long[] mins;
+
+        private final long[] maxes;
+
+        private ExactWindow(long windowMillis) {
+            this.windowMillis = windowMillis;
+            int slots = (int) windowMillis + 1;
+            this.millis = new long[slots];
+            this.counts = new long[slots];
+            this.sums = new long[slots];
+            this.mins = new long[slots];
+            this.maxes = new long[slots];
+            Arrays.fill(millis, Long.MIN_VALUE);
+        }
+
+        private void add(long timestampMillis, long amount, long currentMillis) {
+            if (timestampMillis < currentMillis - windowMillis || timestampMillis > currentMillis) {
+                return;
+            }
+            int slot = (int) Math.floorMod(timestampMillis, (long) millis.length);
+            if (millis[slot] != timestampMillis) {
+                millis[slot] = timestampMillis;
+                counts[slot] = 0;
+                sums[slot] = 0;
+                mins[slot] = Long.MAX_VALUE;
+                maxes[slot] = Long.MIN_VALUE;
+            }
+            counts[slot]++;
+            sums[slot] = Math.addExact(sums[slot], amount);
+            mins[slot] = Math.min(mins[slot], amount);
+            maxes[slot] = Math.max(maxes[slot], amount);
+        }
+
+        private StatisticsDTO statistics(long currentMillis, int scale) {
+            long count = 0;
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long timestampMillis = currentMillis - windowMillis + 1; timestampMillis <= currentMillis; timestampMillis++) {
+                int slot = (int) Math.floorMod(timestampMillis, (long) millis.length);
+                if (millis[slot] == timestampMillis) {
+                    count += counts[slot];
+                    sum = Math.addExact(sum, sums[slot]);
+                    min = Math.min(min, mins[slot]);
+                    max = Math.max(max, maxes[slot]);
+                }
+            }
+            if (count == 0) {
+                return new StatisticsDTO(BigDecimal.ZERO, BigDecimal.ZERO, null, null, 0l, null);
+            }
+            BigDecimal total = BigDecimal.valueOf(sum, scale);
+            return new StatisticsDTO(total, total.divide(BigDecimal.valueOf(count), scale, BigDecimal.ROUND_HALF_EVEN),
+                    BigDecimal.valueOf(max, scale), BigDecimal.valueOf(min, scale), count, null);
+        }
+    }
+
+    /**
+     * Parses {@code <epoch millis>,<amount>} lines into primitives, with the amount unscaled at {@code scale}. Anything
+     * after a second comma is ignored.
+     */
+    private static class TransactionReader {
+
+        private final InputStream in;
+
+        private final int scale;
+
+        private final byte[] buffer = new byte[1 << 16];
+
+        private int position;
+
+        private int limit;
+
+        private long timestampMillis;
+
+        private long amount;
+
+        private TransactionReader(InputStream in, int scale) {
+            this.in = in;
+            this.scale = scale;
+        }
+
+        private boolean next() throws IOException {
+            int c = read();
+            while (c == '\n' || c == '\r') {
+                c = read();
+            }
+            if (c < 0) {
+                return false;
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            timestampMillis = 0;
+            for (; c >= '0' && c <= '9'; c = read()) {
+                timestampMillis = timestampMillis * 10 + (c - '0');
+            }
+            timestampMillis = negative ? -timestampMillis : timestampMillis;
+            if (c != ',') {
+                throw new IllegalArgumentException("Malformed timestamp before " + timestampMillis);
+            }
+            c = read();
+            negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            amount = 0;
+            int decimals = -1;
+            for (; (c >= '0' && c <= '9') || (c == '.' && decimals < 0); c = read()) {
+                if (c == '.') {
+                    decimals = 0;
+                    continue;
+                }
+                if (decimals >= 0 && ++decimals > scale) {
+                    throw new IllegalArgumentException("Amount at " + timestampMillis + " has more than " + scale + " decimals");
+                }
+                amount = Math.addExact(Math.multiplyExact(amount, 10), c - '0');
+            }
+            for (int i = Math.max(decimals, 0); i < scale; i++) {
+                amount = Math.multiplyExact(amount, 10);
+            }
+            amount = negative ? -amount : amount;
+            while (c >= 0 && c != '\n') {
+                c = read();
+            }
+            return true;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.n26.mihai.coding.challenge.replay;
+
+import com.n26.mihai.coding.challenge.enums.TransactionStatus;
+import com.n26.mihai.coding.challenge.properties.ApplicationProperties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplayHarnessTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testQueuedReplayMatchesReference() throws Exception {
+        testReplayMatchesReference("queued", "decimal");
+    }
+
+    @Test
+    public void testStripedReplayMatchesReference() throws Exception {
+        testReplayMatchesReference("striped", "fixed-point");
+    }
+
+    private void testReplayMatchesReference(String ingestMode, String numericMode) throws Exception {
+        //given
+        Path file = folder.newFile().toPath();
+        ReplayHarness.generate(file, 200000, 1500000000000l, 1200000, 7l);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setTransactionLifeMillis(60000l);
+        applicationProperties.setDecimalScale(5);
+        applicationProperties.setIngestMode(ingestMode);
+        applicationProperties.setNumericMode(numericMode);
+        applicationProperties.setAdmissionMode("none");
+        //when
+        ReplayHarness.ReplayReport report = new ReplayHarness(applicationProperties, 20000).replay(file);
+        //then
+        assertThat(report.getMismatches()).isEmpty();
+        assertThat(report.getCheckpoints()).isEqualTo(60);
+        assertThat(report.getTransactions()).isEqualTo(200000);
+        assertThat(report.getCount(TransactionStatus.OLD)).isGreaterThan(0);
+        assertThat(report.getCount(TransactionStatus.CREATED) + report.getCount(TransactionStatus.OLD)).isEqualTo(200000);
+    }
+}
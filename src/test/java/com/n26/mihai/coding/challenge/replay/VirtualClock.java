@@ -0,0 +1,47 @@
+package com.n26.mihai.coding.challenge.replay;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock that only moves when told to, so a workload spanning hours can be replayed as fast as it is read.
+ */
+public class VirtualClock extends Clock {
+
+    private volatile long millis;
+
+    public VirtualClock(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * Moves the clock to {@code millis} unless it is already past it.
+     */
+    public void advanceTo(long millis) {
+        if (millis > this.millis) {
+            this.millis = millis;
+        }
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        throw new UnsupportedOperationException("A virtual clock is always UTC");
+    }
+}
@@ -0,0 +1,104 @@
+package com.n26.mihai.coding.challenge.wal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteAheadLogTest {
+
+    private static final long WINDOW_MILLIS = 60000;
+
+    /**
+     * Far from the wall clock, so segments only roll over and expire by the log's clock.
+     */
+    private static final long NOW = 1478192204000l;
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplayReturnsAppendedTransactions() throws Exception {
+        //given
+        Path directory = folder.getRoot().toPath();
+        long now = NOW;
+        BigDecimal large = new BigDecimal("123456789012345678901234.56789");
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, 10000, 4096, WriteAheadLog.FsyncPolicy.BATCH, () -> WINDOW_MILLIS, clock)) {
+            writeAheadLog.append(now - 1000, new BigDecimal("10.50000"), null);
+            writeAheadLog.append(now - 500, large, "merchant-1");
+            writeAheadLog.append(now - 2 * WINDOW_MILLIS, new BigDecimal("1.00000"), null);
+            writeAheadLog.endBatch();
+        }
+        //when
+        List<Object[]> replayed = new ArrayList<>();
+        long count = new WriteAheadLog(directory, 10000, 4096, WriteAheadLog.FsyncPolicy.NONE, () -> WINDOW_MILLIS, clock)
+                .replay(now - WINDOW_MILLIS, (timestampMillis, amount, key) -> replayed.add(new Object[]{timestampMillis, amount, key}));
+        //then
+        assertThat(count).isEqualTo(2);
+        assertThat(replayed.get(0)).containsExactly(now - 1000, new BigDecimal("10.50000"), null);
+        assertThat(replayed.get(1)).containsExactly(now - 500, large, "merchant-1");
+    }
+
+    @Test
+    public void testExpiredSegmentsAreDeleted() throws Exception {
+        //given
+        Path directory = folder.getRoot().toPath();
+        long now = NOW;
+        File expired = new File(folder.getRoot(), (now - 3 * WINDOW_MILLIS) + ".wal");
+        Files.write(expired.toPath(), new byte[4096]);
+        File live = new File(folder.getRoot(), (now - 1000) + ".wal");
+        Files.write(live.toPath(), new byte[4096]);
+        //when
+        long count = new WriteAheadLog(directory, 10000, 4096, WriteAheadLog.FsyncPolicy.NONE, () -> WINDOW_MILLIS, clock)
+                .replay(now - WINDOW_MILLIS, (timestampMillis, amount, key) -> {
+                });
+        //then
+        assertThat(count).isZero();
+        assertThat(expired).doesNotExist();
+        assertThat(live).exists();
+    }
+
+    @Test
+    public void testRotatedSegmentsAreReplayed() throws Exception {
+        //given
+        Path directory = folder.getRoot().toPath();
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, 10000, 64, WriteAheadLog.FsyncPolicy.PERIODIC, () -> WINDOW_MILLIS, clock)) {
+            for (int i = 0; i < 10; i++) {
+                writeAheadLog.append(NOW - 100 + i, i, 3, null);
+                writeAheadLog.sync();
+            }
+        }
+        //when
+        List<Long> replayed = new ArrayList<>();
+        long count = new WriteAheadLog(directory, 10000, 64, WriteAheadLog.FsyncPolicy.NONE, () -> WINDOW_MILLIS, clock)
+                .replay(NOW - WINDOW_MILLIS, (timestampMillis, amount, key) -> replayed.add(timestampMillis));
+        //then
+        assertThat(directory.toFile().list()).hasSize(5);
+        assertThat(count).isEqualTo(10);
+        assertThat(replayed).isSorted().hasSize(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScaleOutsideTheRecordIsRejected() throws Exception {
+        //given
+        Path directory = folder.getRoot().toPath();
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, 10000, 4096, WriteAheadLog.FsyncPolicy.NONE, () -> WINDOW_MILLIS, clock)) {
+            writeAheadLog.append(NOW, new BigDecimal("1E+128"), null);
+            //when
+            writeAheadLog.append(NOW, new BigDecimal("1E-128"), null);
+        }
+    }
+}